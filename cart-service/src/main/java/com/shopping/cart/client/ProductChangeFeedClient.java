@@ -0,0 +1,114 @@
+package com.shopping.cart.client;
+
+import com.shopping.cart.dto.ProductChangeBatchDto;
+import com.shopping.cart.dto.ProductChangeDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Follows product-service's change feed with long polls and drops changed products from the
+// near-cache, so they are reloaded on next use instead of waiting out the refresh interval.
+// Whenever the feed cannot say what changed (first contact, product-service restarted, or this
+// client fell too far behind) the whole cache is dropped. While the feed is unreachable the
+// cache falls back to its refresh interval alone
+@Component
+public class ProductChangeFeedClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeFeedClient.class);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    
+    private final RestTemplate restTemplate;
+    private final ProductServiceClient productServiceClient;
+    private final String productServiceUrl;
+    private final boolean enabled;
+    private final Duration wait;
+    private volatile Thread poller;
+    
+    public ProductChangeFeedClient(@Qualifier("changeFeedRestTemplate") RestTemplate restTemplate,
+                                   ProductServiceClient productServiceClient,
+                                   @Value("${product.service.url}") String productServiceUrl,
+                                   @Value("${product.client.change-feed.enabled:true}") boolean enabled,
+                                   @Value("${product.client.change-feed.wait:25s}") Duration wait) {
+        this.restTemplate = restTemplate;
+        this.productServiceClient = productServiceClient;
+        this.productServiceUrl = productServiceUrl;
+        this.enabled = enabled;
+        this.wait = wait;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        poller = new Thread(this::follow, "product-change-feed");
+        poller.setDaemon(true);
+        poller.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        Thread current = poller;
+        poller = null;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+    
+    private void follow() {
+        String epoch = null;
+        Long seq = null;
+        Duration backoff = Duration.ofSeconds(1);
+        boolean connected = true;
+        
+        while (poller != null) {
+            try {
+                String url = productServiceUrl + "/api/products/changes?limit=500&wait=" + wait.toSeconds()
+                        + (seq != null ? "&since=" + seq + "&epoch=" + epoch : "");
+                ProductChangeBatchDto batch = restTemplate.getForObject(url, ProductChangeBatchDto.class);
+                if (batch == null) {
+                    throw new IllegalStateException("Empty change feed response");
+                }
+                
+                if (seq == null || batch.isReset()) {
+                    productServiceClient.invalidateAll();
+                } else if (!batch.getChanges().isEmpty()) {
+                    List<Long> productIds = new ArrayList<>(batch.getChanges().size());
+                    for (ProductChangeDto change : batch.getChanges()) {
+                        productIds.add(change.getProductId());
+                    }
+                    productServiceClient.invalidate(productIds);
+                }
+                epoch = batch.getEpoch();
+                seq = batch.getSeq();
+                
+                if (!connected) {
+                    logger.info("Following product change feed again from seq {}", seq);
+                    connected = true;
+                }
+                backoff = Duration.ofSeconds(1);
+            } catch (Exception e) {
+                if (connected) {
+                    logger.warn("Product change feed unavailable, retrying: " + e.getMessage());
+                    connected = false;
+                }
+                try {
+                    Thread.sleep(backoff.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            }
+        }
+    }
+}
@@ -1,44 +1,332 @@
 package com.shopping.cart.client;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.shopping.cart.dto.ProductDto;
+import com.shopping.cart.dto.StockAvailabilityDto;
+import com.shopping.cart.dto.StockHoldDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Component
 public class ProductServiceClient {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceClient.class);
     
     private final RestTemplate restTemplate;
+    private final ProductServiceGuard guard;
     private final String productServiceUrl;
+    private final ExecutorService refreshExecutor;
+    private final ExecutorService fanOutExecutor;
+    private final int fanOutBatchSize;
+    private final Duration fanOutDeadline;
+    private final LoadingCache<Long, CachedProduct> productCache;
+    // The cache already loads a key once at a time; these also cover a refresh racing a load of the
+    // same product and bulk loads from concurrent carts that share products
+    private final SingleFlight<Long, CachedProduct> productCalls;
+    private final SingleFlight<Long, CachedProduct> batchCalls;
     
-    public ProductServiceClient(RestTemplate restTemplate, 
-                               @Value("${product.service.url}") String productServiceUrl) {
+    public ProductServiceClient(RestTemplate restTemplate,
+                               ProductServiceGuard guard,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.service.url}") String productServiceUrl,
+                               @Value("${product.client.cache.max-size:10000}") long cacheMaxSize,
+                               @Value("${product.client.cache.refresh-after:5s}") Duration refreshAfter,
+                               @Value("${product.client.cache.expire-after:5m}") Duration expireAfter,
+                               @Value("${product.client.fan-out.threads:16}") int fanOutThreads,
+                               @Value("${product.client.fan-out.batch-size:50}") int fanOutBatchSize,
+                               @Value("${product.client.fan-out.deadline:2s}") Duration fanOutDeadline) {
         this.restTemplate = restTemplate;
+        this.guard = guard;
         this.productServiceUrl = productServiceUrl;
+        this.refreshExecutor = Executors.newFixedThreadPool(2, daemonThreadFactory("product-cache-refresh-"));
+        // Bounded in threads and queue; lookups beyond that are rejected and shown as unavailable
+        // rather than queueing behind a slow product-service
+        ThreadPoolExecutor fanOutPool = new ThreadPoolExecutor(fanOutThreads, fanOutThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(fanOutThreads * 8),
+                daemonThreadFactory("product-fan-out-"));
+        fanOutPool.allowCoreThreadTimeOut(true);
+        this.fanOutExecutor = fanOutPool;
+        this.fanOutBatchSize = fanOutBatchSize;
+        this.fanOutDeadline = fanOutDeadline;
+        this.productCalls = new SingleFlight<>(meterRegistry, "product");
+        this.batchCalls = new SingleFlight<>(meterRegistry, "product-batch");
+        // Reads past refresh-after return the cached value at once and reload it in the background;
+        // a failed reload keeps the old value, so display data survives a slow or down product-service.
+        // Reloads revalidate with the cached ETag, so an unchanged product costs a bodiless 304
+        this.productCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .executor(refreshExecutor)
+                .build(new CacheLoader<Long, CachedProduct>() {
+                    @Override
+                    public CachedProduct load(Long productId) {
+                        return productCalls.execute(productId, () -> fetchProduct(productId, null));
+                    }
+                    
+                    @Override
+                    public Map<Long, CachedProduct> loadAll(Set<? extends Long> productIds) {
+                        return fetchProducts(productIds);
+                    }
+                    
+                    @Override
+                    public CachedProduct reload(Long productId, CachedProduct oldValue) {
+                        return productCalls.execute(productId, () -> fetchProduct(productId, oldValue));
+                    }
+                });
     }
     
+    // A cached copy is returned even while product-service is down; without one, an unavailable
+    // product-service is reported rather than passed off as an unknown product
     public ProductDto getProduct(Long productId) {
         try {
-            String url = productServiceUrl + "/api/products/" + productId;
-            return restTemplate.getForObject(url, ProductDto.class);
+            CachedProduct cached = productCache.get(productId);
+            return cached != null ? cached.product : null;
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error fetching product from Product Service: " + productId, e);
             return null;
         }
     }
     
+    public Map<Long, ProductDto> getProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, CachedProduct> cached;
+        try {
+            cached = productCache.getAll(productIds);
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable, using cached products: " + e.getMessage());
+            cached = productCache.getAllPresent(productIds);
+        } catch (Exception e) {
+            logger.error("Error fetching products from Product Service: " + productIds, e);
+            cached = productCache.getAllPresent(productIds);
+        }
+        Map<Long, ProductDto> productsById = new HashMap<>();
+        cached.forEach((productId, entry) -> productsById.put(productId, entry.product));
+        return productsById;
+    }
+    
+    public void invalidate(Collection<Long> productIds) {
+        productCache.invalidateAll(productIds);
+    }
+    
+    public void invalidateAll() {
+        productCache.invalidateAll();
+    }
+    
+    // Stock checks always go to product-service; cached stock is never trusted for availability, so
+    // an unavailable product-service is reported instead of answering that the stock is short
     public boolean checkAvailability(Long productId, Integer quantity) {
         try {
             String url = productServiceUrl + "/api/products/" + productId + "/available?quantity=" + quantity;
-            Boolean available = restTemplate.getForObject(url, Boolean.class);
+            Boolean available = guard.call(() -> restTemplate.getForObject(url, Boolean.class));
             return available != null && available;
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error checking availability from Product Service: " + productId, e);
             return false;
         }
     }
+    
+    // One round trip for any number of products; products missing from the result are unknown
+    public Map<Long, StockAvailabilityDto> checkAvailability(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            String url = productServiceUrl + "/api/products/availability";
+            
+            List<Map<String, Object>> items = new ArrayList<>();
+            quantities.forEach((productId, quantity) -> {
+                Map<String, Object> item = new HashMap<>();
+                item.put("productId", productId);
+                item.put("quantity", quantity);
+                items.add(item);
+            });
+            Map<String, Object> body = new HashMap<>();
+            body.put("items", items);
+            
+            StockAvailabilityDto[] results =
+                    guard.call(() -> restTemplate.postForObject(url, body, StockAvailabilityDto[].class));
+            if (results == null) {
+                return Collections.emptyMap();
+            }
+            Map<Long, StockAvailabilityDto> availability = new HashMap<>();
+            for (StockAvailabilityDto result : results) {
+                availability.put(result.getProductId(), result);
+            }
+            return availability;
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error checking availability from Product Service: " + quantities.keySet(), e);
+            return Collections.emptyMap();
+        }
+    }
+    
+    // Takes the stock out of sale until the hold is confirmed by an order, released or expires
+    public StockHoldDto createHold(Map<Long, Integer> quantities) {
+        try {
+            String url = productServiceUrl + "/api/products/holds";
+            
+            List<Map<String, Object>> items = new ArrayList<>();
+            quantities.forEach((productId, quantity) -> {
+                Map<String, Object> item = new HashMap<>();
+                item.put("productId", productId);
+                item.put("quantity", quantity);
+                items.add(item);
+            });
+            Map<String, Object> body = new HashMap<>();
+            body.put("items", items);
+            
+            return guard.call(() -> restTemplate.postForObject(url, body, StockHoldDto.class));
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new IllegalStateException("Insufficient stock for one or more products");
+        } catch (HttpClientErrorException.BadRequest e) {
+            throw new IllegalArgumentException("Invalid stock hold for products: " + quantities.keySet());
+        } catch (Exception e) {
+            logger.error("Error creating stock hold for products: " + quantities.keySet(), e);
+            throw new RuntimeException("Failed to create stock hold", e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        fanOutExecutor.shutdownNow();
+    }
+    
+    // Sends If-None-Match when the previous copy carries an ETag and keeps that copy on a 304
+    private CachedProduct fetchProduct(Long productId, CachedProduct previous) {
+        try {
+            String url = productServiceUrl + "/api/products/" + productId + "/pricing";
+            
+            HttpHeaders headers = new HttpHeaders();
+            if (previous != null && previous.etag != null) {
+                headers.setIfNoneMatch(previous.etag);
+            }
+            
+            ResponseEntity<ProductDto> response =
+                    guard.call(() -> restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), ProductDto.class));
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                return previous;
+            }
+            ProductDto product = response.getBody();
+            return product != null ? new CachedProduct(product, response.getHeaders().getETag()) : null;
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+    }
+    
+    // Misses are split into batches fetched concurrently, so a large cart costs about one round trip.
+    // Batches that fail or are not back by the deadline are left out; the caller sees those products
+    // as unavailable (or keeps a stale copy) and they are fetched again on the next read
+    private Map<Long, CachedProduct> fetchProducts(Collection<? extends Long> productIds) {
+        List<Long> ids = new ArrayList<>(productIds);
+        List<CompletableFuture<Map<Long, CachedProduct>>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += fanOutBatchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + fanOutBatchSize, ids.size()));
+            batches.add(fetchBatchAsync(batch));
+        }
+        
+        Map<Long, CachedProduct> productsById = new HashMap<>();
+        for (CompletableFuture<Map<Long, CachedProduct>> batch : batches) {
+            productsById.putAll(batch.join());
+        }
+        return productsById;
+    }
+    
+    private CompletableFuture<Map<Long, CachedProduct>> fetchBatchAsync(List<Long> productIds) {
+        Map<Long, CachedProduct> none = Collections.emptyMap();
+        try {
+            return CompletableFuture.supplyAsync(() -> batchCalls.executeAll(productIds, this::fetchBatch), fanOutExecutor)
+                    .orTimeout(fanOutDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        if (e instanceof TimeoutException) {
+                            logger.warn("No answer from Product Service within {} for products {}", fanOutDeadline, productIds);
+                        } else if (e.getCause() instanceof ProductServiceUnavailableException) {
+                            logger.warn("Product Service unavailable, not fetching products {}: {}",
+                                    productIds, e.getCause().getMessage());
+                        } else {
+                            logger.error("Error fetching products from Product Service: " + productIds, e);
+                        }
+                        return none;
+                    });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Product lookups saturated; not fetching products " + productIds);
+            return CompletableFuture.completedFuture(none);
+        }
+    }
+    
+    // The batch endpoint carries no per-product ETags; those entries revalidate unconditionally
+    // once and conditionally after that
+    private Map<Long, CachedProduct> fetchBatch(List<Long> productIds) {
+        String url = productServiceUrl + "/api/products/pricing/batch";
+        ProductDto[] products = guard.call(() -> restTemplate.postForObject(url, productIds, ProductDto[].class));
+        if (products == null) {
+            return Collections.emptyMap();
+        }
+        Map<Long, CachedProduct> productsById = new HashMap<>();
+        for (ProductDto product : products) {
+            productsById.put(product.getId(), new CachedProduct(product, null));
+        }
+        return productsById;
+    }
+    
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static class CachedProduct {
+        private final ProductDto product;
+        private final String etag;
+        
+        private CachedProduct(ProductDto product, String etag) {
+            this.product = product;
+            this.etag = etag;
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package com.shopping.cart.client;
+
+// Product-service could not be asked: it failed or timed out, its circuit is open, or too many
+// calls to it are already in flight. Says nothing about the products or stock involved
+public class ProductServiceUnavailableException extends RuntimeException {
+    
+    public ProductServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,114 @@
+package com.shopping.cart.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Concurrent calls for the same key share one outstanding call and its result or failure. A call
+// made after the shared one has finished starts a new one, so nothing is cached here. Publishes
+// product.client.calls tagged by call and by outcome: executed counts calls that went out and
+// coalesced counts keys taken from a call already in flight
+final class SingleFlight<K, V> {
+    
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+    
+    SingleFlight(MeterRegistry meterRegistry, String call) {
+        this.executed = meterRegistry.counter("product.client.calls", "call", call, "outcome", "executed");
+        this.coalesced = meterRegistry.counter("product.client.calls", "call", call, "outcome", "coalesced");
+        meterRegistry.gauge("product.client.calls.in-flight", Tags.of("call", call), inFlight, Map::size);
+    }
+    
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> owned = new CompletableFuture<>();
+        CompletableFuture<V> shared = inFlight.putIfAbsent(key, owned);
+        if (shared != null) {
+            coalesced.increment();
+            return join(shared);
+        }
+        executed.increment();
+        try {
+            V value = call.get();
+            owned.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            owned.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, owned);
+        }
+    }
+    
+    // Keys already in flight are waited on and the rest are fetched with one call, which returns
+    // the values it found; keys without a value are left out of the result. The own call runs
+    // before waiting on anyone else's, so two overlapping batches never wait on each other
+    Map<K, V> executeAll(Collection<K> keys, Function<List<K>, Map<K, V>> call) {
+        Map<K, CompletableFuture<V>> owned = new HashMap<>();
+        Map<K, CompletableFuture<V>> shared = new HashMap<>();
+        for (K key : keys) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                shared.put(key, existing);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        
+        Map<K, V> values = new HashMap<>();
+        if (!owned.isEmpty()) {
+            executed.increment();
+            try {
+                Map<K, V> fetched = call.apply(new ArrayList<>(owned.keySet()));
+                owned.forEach((key, future) -> {
+                    V value = fetched.get(key);
+                    future.complete(value);
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                });
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        if (!shared.isEmpty()) {
+            coalesced.increment(shared.size());
+            shared.forEach((key, future) -> {
+                V value = join(future);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            });
+        }
+        return values;
+    }
+    
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,14 +1,96 @@
 package com.shopping.cart.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
+// Calls to product-service share one pool of kept-alive connections. Every call is bounded: a
+// connection must be leased within pool-timeout and established within connect-timeout, and the
+// answer must start within read-timeout. The change feed's long poll gets its own RestTemplate on
+// the same pool whose read timeout covers the poll's wait
 @Configuration
 public class RestTemplateConfig {
     
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public PoolingHttpClientConnectionManager productServiceConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${product.client.http.max-connections:200}") int maxConnections,
+            @Value("${product.client.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${product.client.http.connect-timeout:1s}") Duration connectTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        // httpcomponents.httpclient.pool.* tagged httpclient=product-service
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "product-service").bindTo(meterRegistry);
+        return connectionManager;
+    }
+    
+    // Idle connections are dropped before the server's keep-alive timeout (Tomcat's is 20s) closes
+    // them under us. Retries are off, so a failing product-service costs a caller one timeout, not two
+    @Bean
+    public CloseableHttpClient productServiceHttpClient(
+            PoolingHttpClientConnectionManager productServiceConnectionManager,
+            @Value("${product.client.http.keep-alive:15s}") Duration keepAlive) {
+        return HttpClients.custom()
+                .setConnectionManager(productServiceConnectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .evictExpiredConnections()
+                .disableAutomaticRetries()
+                .build();
+    }
+    
+    @Bean
+    @Primary
+    public RestTemplate restTemplate(CloseableHttpClient productServiceHttpClient,
+                                     @Value("${product.client.http.pool-timeout:1s}") Duration poolTimeout,
+                                     @Value("${product.client.http.read-timeout:5s}") Duration readTimeout) {
+        return new RestTemplate(requestFactory(productServiceHttpClient, poolTimeout, readTimeout));
+    }
+    
+    @Bean
+    public RestTemplate changeFeedRestTemplate(CloseableHttpClient productServiceHttpClient,
+                                               @Value("${product.client.http.pool-timeout:1s}") Duration poolTimeout,
+                                               @Value("${product.client.http.read-timeout:5s}") Duration readTimeout,
+                                               @Value("${product.client.change-feed.wait:25s}") Duration wait) {
+        return new RestTemplate(requestFactory(productServiceHttpClient, poolTimeout, wait.plus(readTimeout)));
+    }
+    
+    // The request config is handed to every request, so RestTemplates on one client can differ in timeouts
+    private static HttpComponentsClientHttpRequestFactory requestFactory(CloseableHttpClient httpClient,
+                                                                         Duration poolTimeout,
+                                                                         Duration readTimeout) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build();
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(requestConfig);
+            return context;
+        });
+        return requestFactory;
     }
 }
@@ -1,7 +1,10 @@
 package com.shopping.cart.controller;
 
+import com.shopping.cart.client.ProductServiceUnavailableException;
 import com.shopping.cart.dto.AddItemRequest;
+import com.shopping.cart.dto.CartAvailabilityResponse;
 import com.shopping.cart.dto.CartResponse;
+import com.shopping.cart.dto.StockHoldDto;
 import com.shopping.cart.dto.UpdateItemRequest;
 import com.shopping.cart.entity.CartItem;
 import com.shopping.cart.service.CartService;
@@ -35,6 +38,40 @@ public class CartController {
         }
     }
     
+    @GetMapping("/{userId}/availability")
+    public ResponseEntity<CartAvailabilityResponse> checkCartAvailability(@PathVariable Long userId) {
+        try {
+            CartAvailabilityResponse availability = cartService.checkCartAvailability(userId);
+            return ResponseEntity.ok(availability);
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error checking cart availability for user: " + userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/{userId}/hold")
+    public ResponseEntity<StockHoldDto> holdCart(@PathVariable Long userId) {
+        try {
+            StockHoldDto hold = cartService.holdCart(userId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid cart hold request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Cart hold rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error holding cart for user: " + userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @PostMapping("/items")
     public ResponseEntity<CartItem> addItem(@Valid @RequestBody AddItemRequest request) {
         try {
@@ -43,6 +80,9 @@ public class CartController {
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid add item request: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             logger.error("Error adding item to cart", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -58,6 +98,9 @@ public class CartController {
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid update item request: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             logger.error("Error updating cart item: " + itemId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -0,0 +1,42 @@
+package com.shopping.cart.dto;
+
+import java.util.List;
+
+public class CartAvailabilityResponse {
+    private Long userId;
+    private boolean allAvailable;
+    private List<StockAvailabilityDto> items;
+    
+    public CartAvailabilityResponse() {
+    }
+    
+    public CartAvailabilityResponse(Long userId, boolean allAvailable, List<StockAvailabilityDto> items) {
+        this.userId = userId;
+        this.allAvailable = allAvailable;
+        this.items = items;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public boolean isAllAvailable() {
+        return allAvailable;
+    }
+    
+    public void setAllAvailable(boolean allAvailable) {
+        this.allAvailable = allAvailable;
+    }
+    
+    public List<StockAvailabilityDto> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<StockAvailabilityDto> items) {
+        this.items = items;
+    }
+}
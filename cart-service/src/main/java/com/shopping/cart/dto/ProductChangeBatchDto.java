@@ -0,0 +1,45 @@
+package com.shopping.cart.dto;
+
+import java.util.List;
+
+public class ProductChangeBatchDto {
+    private String epoch;
+    private Long seq;
+    private boolean reset;
+    private List<ProductChangeDto> changes;
+    
+    public ProductChangeBatchDto() {
+    }
+    
+    public String getEpoch() {
+        return epoch;
+    }
+    
+    public void setEpoch(String epoch) {
+        this.epoch = epoch;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public boolean isReset() {
+        return reset;
+    }
+    
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+    
+    public List<ProductChangeDto> getChanges() {
+        return changes;
+    }
+    
+    public void setChanges(List<ProductChangeDto> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,34 @@
+package com.shopping.cart.dto;
+
+public class ProductChangeDto {
+    private Long seq;
+    private Long productId;
+    private String changeType;
+    
+    public ProductChangeDto() {
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public String getChangeType() {
+        return changeType;
+    }
+    
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+}
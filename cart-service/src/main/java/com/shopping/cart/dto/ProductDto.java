@@ -2,22 +2,19 @@ package com.shopping.cart.dto;
 
 import java.math.BigDecimal;
 
+// Pricing view of a product, as served by product-service's /pricing endpoints
 public class ProductDto {
     private Long id;
     private String name;
-    private String description;
     private BigDecimal price;
-    private Integer stock;
     
     public ProductDto() {
     }
     
-    public ProductDto(Long id, String name, String description, BigDecimal price, Integer stock) {
+    public ProductDto(Long id, String name, BigDecimal price) {
         this.id = id;
         this.name = name;
-        this.description = description;
         this.price = price;
-        this.stock = stock;
     }
     
     public Long getId() {
@@ -36,14 +33,6 @@ public class ProductDto {
         this.name = name;
     }
     
-    public String getDescription() {
-        return description;
-    }
-    
-    public void setDescription(String description) {
-        this.description = description;
-    }
-    
     public BigDecimal getPrice() {
         return price;
     }
@@ -51,12 +40,4 @@ public class ProductDto {
     public void setPrice(BigDecimal price) {
         this.price = price;
     }
-    
-    public Integer getStock() {
-        return stock;
-    }
-    
-    public void setStock(Integer stock) {
-        this.stock = stock;
-    }
 }
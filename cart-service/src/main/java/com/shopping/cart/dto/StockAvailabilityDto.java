@@ -0,0 +1,50 @@
+package com.shopping.cart.dto;
+
+public class StockAvailabilityDto {
+    private Long productId;
+    private Integer requested;
+    private Integer stock;
+    private boolean available;
+    
+    public StockAvailabilityDto() {
+    }
+    
+    public StockAvailabilityDto(Long productId, Integer requested, Integer stock, boolean available) {
+        this.productId = productId;
+        this.requested = requested;
+        this.stock = stock;
+        this.available = available;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getRequested() {
+        return requested;
+    }
+    
+    public void setRequested(Integer requested) {
+        this.requested = requested;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public boolean isAvailable() {
+        return available;
+    }
+    
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
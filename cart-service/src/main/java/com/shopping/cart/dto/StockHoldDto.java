@@ -0,0 +1,46 @@
+package com.shopping.cart.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class StockHoldDto {
+    private Long id;
+    private String status;
+    private LocalDateTime expiresAt;
+    private List<StockHoldItemDto> items;
+    
+    public StockHoldDto() {
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public List<StockHoldItemDto> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<StockHoldItemDto> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,30 @@
+package com.shopping.cart.dto;
+
+public class StockHoldItemDto {
+    private Long productId;
+    private Integer quantity;
+    
+    public StockHoldItemDto() {
+    }
+    
+    public StockHoldItemDto(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
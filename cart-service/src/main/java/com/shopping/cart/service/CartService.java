@@ -1,28 +1,35 @@
 package com.shopping.cart.service;
 
 import com.shopping.cart.client.ProductServiceClient;
+import com.shopping.cart.dto.CartAvailabilityResponse;
 import com.shopping.cart.dto.CartItemDto;
 import com.shopping.cart.dto.CartResponse;
 import com.shopping.cart.dto.ProductDto;
+import com.shopping.cart.dto.StockAvailabilityDto;
+import com.shopping.cart.dto.StockHoldDto;
 import com.shopping.cart.entity.CartItem;
-import com.shopping.cart.repository.CartItemRepository;
+import com.shopping.cart.store.CartStore;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+// Transactions belong to the cart store: the JPA store runs each call in one, while the
+// write-behind store only touches the database on a cart's first load and when it flushes
 @Service
-@Transactional
 public class CartService {
     
-    private final CartItemRepository cartItemRepository;
+    private final CartStore cartStore;
     private final ProductServiceClient productServiceClient;
     
-    public CartService(CartItemRepository cartItemRepository, ProductServiceClient productServiceClient) {
-        this.cartItemRepository = cartItemRepository;
+    public CartService(CartStore cartStore, ProductServiceClient productServiceClient) {
+        this.cartStore = cartStore;
         this.productServiceClient = productServiceClient;
     }
     
@@ -37,28 +44,15 @@ public class CartService {
             throw new IllegalArgumentException("Product not found: " + productId);
         }
         
-        if (!productServiceClient.checkAvailability(productId, quantity)) {
+        // Check if item already exists in cart and validate the resulting quantity in one call
+        Optional<CartItem> existingItem = cartStore.findByUserIdAndProductId(userId, productId);
+        int newQuantity = existingItem.map(item -> item.getQuantity() + quantity).orElse(quantity);
+        
+        if (!productServiceClient.checkAvailability(productId, newQuantity)) {
             throw new IllegalArgumentException("Insufficient stock for product: " + product.getName());
         }
         
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByUserIdAndProductId(userId, productId);
-        
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + quantity;
-            
-            // Validate new quantity against stock
-            if (!productServiceClient.checkAvailability(productId, newQuantity)) {
-                throw new IllegalArgumentException("Insufficient stock for requested quantity");
-            }
-            
-            item.setQuantity(newQuantity);
-            return cartItemRepository.save(item);
-        } else {
-            CartItem newItem = new CartItem(userId, productId, quantity);
-            return cartItemRepository.save(newItem);
-        }
+        return cartStore.addQuantity(userId, productId, quantity);
     }
     
     public CartItem updateItem(Long itemId, Integer quantity) {
@@ -66,7 +60,7 @@ public class CartService {
             throw new IllegalArgumentException("Quantity must be positive");
         }
         
-        CartItem item = cartItemRepository.findById(itemId)
+        CartItem item = cartStore.findById(itemId)
                 .orElseThrow(() -> new IllegalArgumentException("Cart item not found: " + itemId));
         
         // Validate against stock
@@ -74,22 +68,28 @@ public class CartService {
             throw new IllegalArgumentException("Insufficient stock for requested quantity");
         }
         
-        item.setQuantity(quantity);
-        return cartItemRepository.save(item);
+        return cartStore.setQuantity(itemId, quantity)
+                .orElseThrow(() -> new IllegalArgumentException("Cart item not found: " + itemId));
     }
     
     public void removeItem(Long itemId) {
-        if (!cartItemRepository.existsById(itemId)) {
+        if (!cartStore.remove(itemId)) {
             throw new IllegalArgumentException("Cart item not found: " + itemId);
         }
-        cartItemRepository.deleteById(itemId);
     }
     
     public CartResponse getCart(Long userId) {
-        List<CartItem> items = cartItemRepository.findByUserId(userId);
+        List<CartItem> items = cartStore.findByUserId(userId);
+        
+        // Cache misses are fetched in concurrent batches under one deadline; products that do not
+        // arrive in time are shown as not available rather than holding up the cart
+        Set<Long> productIds = items.stream()
+                .map(CartItem::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, ProductDto> products = productServiceClient.getProducts(productIds);
         
         List<CartItemDto> itemDtos = items.stream()
-                .map(this::convertToDto)
+                .map(item -> convertToDto(item, products.get(item.getProductId())))
                 .collect(Collectors.toList());
         
         BigDecimal totalPrice = itemDtos.stream()
@@ -99,12 +99,45 @@ public class CartService {
         return new CartResponse(userId, itemDtos, totalPrice);
     }
     
+    // Validates every line of the cart against current stock in a single product-service call
+    public CartAvailabilityResponse checkCartAvailability(Long userId) {
+        List<CartItem> items = cartStore.findByUserId(userId);
+        
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        Map<Long, StockAvailabilityDto> availability = productServiceClient.checkAvailability(quantities);
+        
+        List<StockAvailabilityDto> results = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> results.add(availability.getOrDefault(productId,
+                new StockAvailabilityDto(productId, quantity, null, false))));
+        boolean allAvailable = results.stream().allMatch(StockAvailabilityDto::isAvailable);
+        
+        return new CartAvailabilityResponse(userId, allAvailable, results);
+    }
+    
+    // Holds the cart's stock for checkout; the order then confirms the hold instead of reserving stock
+    public StockHoldDto holdCart(Long userId) {
+        List<CartItem> items = cartStore.findByUserId(userId);
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty for user: " + userId);
+        }
+        
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        // The cart being checked out is written through before its stock is held
+        cartStore.flush(userId);
+        return productServiceClient.createHold(quantities);
+    }
+    
     public void clearCart(Long userId) {
-        cartItemRepository.deleteByUserId(userId);
+        cartStore.clear(userId);
     }
     
-    private CartItemDto convertToDto(CartItem item) {
-        ProductDto product = productServiceClient.getProduct(item.getProductId());
+    private CartItemDto convertToDto(CartItem item, ProductDto product) {
         if (product == null) {
             // Handle case where product no longer exists
             return new CartItemDto(
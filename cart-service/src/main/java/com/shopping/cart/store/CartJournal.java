@@ -0,0 +1,253 @@
+package com.shopping.cart.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of cart line changes with group commit: appenders queue a record and wait while
+// a single writer thread writes everything queued so far and forces it to disk with one fsync.
+// Segments are named after their first sequence number and start with a record of the highest item
+// id written before them, so ids are never handed out twice even after the lines that used them
+// were deleted. A segment is deleted once every record in it has been written to the database.
+class CartJournal implements AutoCloseable {
+    
+    // seq, userId, itemId, productId, quantity, CRC32 of the first 36 bytes
+    static final int RECORD_BYTES = 40;
+    
+    private static final String SEGMENT_PREFIX = "cart-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final Object lock = new Object();
+    private final Thread writer;
+    
+    // Guarded by lock
+    private long lastSeq;
+    private Batch pending = new Batch();
+    private boolean closed;
+    private IOException failure;
+    
+    // Only touched by the writer thread
+    private FileChannel segment;
+    private long segmentSize;
+    private long highestItemId;
+    
+    CartJournal(Path directory, long highestItemId, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.highestItemId = highestItemId;
+        Files.createDirectories(directory);
+        openSegment(1);
+        this.writer = new Thread(this::writeLoop, "cart-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    // Queues the record and returns at once; the future completes once it is on disk. Records are
+    // written in the order they were queued, so waiting for the last of several covers them all
+    CompletableFuture<Void> append(long userId, long itemId, long productId, int quantity) {
+        synchronized (lock) {
+            if (closed || failure != null) {
+                throw new UncheckedIOException(failure != null ? failure : new IOException("Cart journal is closed"));
+            }
+            pending.records.add(new CartJournalRecord(++lastSeq, userId, itemId, productId, quantity));
+            lock.notifyAll();
+            return pending.done;
+        }
+    }
+    
+    static void await(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException((IOException) e.getCause());
+        }
+    }
+    
+    // Sequence number of the last record queued
+    long lastSeq() {
+        synchronized (lock) {
+            return lastSeq;
+        }
+    }
+    
+    // Deletes every closed segment whose records all have a sequence number up to throughSeq
+    void deleteThrough(long throughSeq) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) - 1 <= throughSeq) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Every record in the directory, in sequence order; a segment is read up to its first torn or
+    // corrupt record
+    static List<CartJournalRecord> read(Path directory) throws IOException {
+        List<CartJournalRecord> records = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return records;
+        }
+        CRC32 crc = new CRC32();
+        for (Path segment : segments(directory)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (buffer.remaining() >= RECORD_BYTES) {
+                int start = buffer.position();
+                long seq = buffer.getLong();
+                long userId = buffer.getLong();
+                long itemId = buffer.getLong();
+                long productId = buffer.getLong();
+                int quantity = buffer.getInt();
+                crc.reset();
+                crc.update(buffer.array(), start, RECORD_BYTES - Integer.BYTES);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break;
+                }
+                records.add(new CartJournalRecord(seq, userId, itemId, productId, quantity));
+            }
+        }
+        return records;
+    }
+    
+    static void deleteAll(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            for (Path segment : segments(directory)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+    
+    private void writeLoop() {
+        while (true) {
+            Batch batch;
+            IOException failed;
+            synchronized (lock) {
+                while (pending.records.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending.records.isEmpty()) {
+                    break;
+                }
+                batch = pending;
+                pending = new Batch();
+                failed = failure;
+            }
+            
+            if (failed == null) {
+                try {
+                    write(batch.records);
+                } catch (IOException e) {
+                    // Nothing after a failed write can be trusted on replay, so the journal stops taking records
+                    synchronized (lock) {
+                        failure = e;
+                    }
+                    failed = e;
+                }
+            }
+            if (failed != null) {
+                batch.done.completeExceptionally(failed);
+                continue;
+            }
+            batch.done.complete(null);
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            // Everything acknowledged has already been forced
+        }
+    }
+    
+    private void write(List<CartJournalRecord> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_BYTES);
+        for (CartJournalRecord record : records) {
+            put(buffer, record);
+            highestItemId = Math.max(highestItemId, record.getItemId());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        
+        segmentSize += (long) records.size() * RECORD_BYTES;
+        if (segmentSize >= segmentBytes) {
+            segment.close();
+            openSegment(records.get(records.size() - 1).getSeq() + 1);
+        }
+    }
+    
+    private void openSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        put(buffer, new CartJournalRecord(0, 0, highestItemId, 0, 0));
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        segmentSize = segment.size();
+    }
+    
+    private static void put(ByteBuffer buffer, CartJournalRecord record) {
+        int start = buffer.position();
+        buffer.putLong(record.getSeq());
+        buffer.putLong(record.getUserId());
+        buffer.putLong(record.getItemId());
+        buffer.putLong(record.getProductId());
+        buffer.putInt(record.getQuantity());
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, RECORD_BYTES - Integer.BYTES);
+        buffer.putInt((int) crc.getValue());
+    }
+    
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private static class Batch {
+        private final List<CartJournalRecord> records = new ArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,40 @@
+package com.shopping.cart.store;
+
+// The state of one cart line after a change; a quantity of zero means the line was removed.
+// A record with seq 0 only carries the highest item id handed out before its segment was opened
+class CartJournalRecord {
+    
+    private final long seq;
+    private final long userId;
+    private final long itemId;
+    private final long productId;
+    private final int quantity;
+    
+    CartJournalRecord(long seq, long userId, long itemId, long productId, int quantity) {
+        this.seq = seq;
+        this.userId = userId;
+        this.itemId = itemId;
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    long getSeq() {
+        return seq;
+    }
+    
+    long getUserId() {
+        return userId;
+    }
+    
+    long getItemId() {
+        return itemId;
+    }
+    
+    long getProductId() {
+        return productId;
+    }
+    
+    int getQuantity() {
+        return quantity;
+    }
+}
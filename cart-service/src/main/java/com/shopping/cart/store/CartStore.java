@@ -0,0 +1,30 @@
+package com.shopping.cart.store;
+
+import com.shopping.cart.entity.CartItem;
+
+import java.util.List;
+import java.util.Optional;
+
+// Where cart lines are kept. Each mutation is atomic for the user it touches and durable when it returns
+public interface CartStore {
+    
+    List<CartItem> findByUserId(Long userId);
+    
+    Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
+    
+    Optional<CartItem> findById(Long itemId);
+    
+    // Adds to the user's line for the product, creating the line when there is none
+    CartItem addQuantity(Long userId, Long productId, int quantity);
+    
+    // Empty when there is no such line
+    Optional<CartItem> setQuantity(Long itemId, int quantity);
+    
+    // False when there is no such line
+    boolean remove(Long itemId);
+    
+    void clear(Long userId);
+    
+    // Makes the cart_items table current for the user, e.g. before the cart is checked out
+    void flush(Long userId);
+}
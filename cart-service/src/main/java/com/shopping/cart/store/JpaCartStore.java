@@ -0,0 +1,76 @@
+package com.shopping.cart.store;
+
+import com.shopping.cart.entity.CartItem;
+import com.shopping.cart.repository.CartItemRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+// Every change is its own write to cart_items; each call runs in one transaction
+@Component
+@ConditionalOnProperty(name = "cart.store.write-behind.enabled", havingValue = "false", matchIfMissing = true)
+@Transactional
+public class JpaCartStore implements CartStore {
+    
+    private final CartItemRepository cartItemRepository;
+    
+    public JpaCartStore(CartItemRepository cartItemRepository) {
+        this.cartItemRepository = cartItemRepository;
+    }
+    
+    @Override
+    public List<CartItem> findByUserId(Long userId) {
+        return cartItemRepository.findByUserId(userId);
+    }
+    
+    @Override
+    public Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId) {
+        return cartItemRepository.findByUserIdAndProductId(userId, productId);
+    }
+    
+    @Override
+    public Optional<CartItem> findById(Long itemId) {
+        return cartItemRepository.findById(itemId);
+    }
+    
+    @Override
+    public CartItem addQuantity(Long userId, Long productId, int quantity) {
+        CartItem item = cartItemRepository.findByUserIdAndProductId(userId, productId)
+                .map(existing -> {
+                    existing.setQuantity(existing.getQuantity() + quantity);
+                    return existing;
+                })
+                .orElseGet(() -> new CartItem(userId, productId, quantity));
+        return cartItemRepository.save(item);
+    }
+    
+    @Override
+    public Optional<CartItem> setQuantity(Long itemId, int quantity) {
+        return cartItemRepository.findById(itemId).map(item -> {
+            item.setQuantity(quantity);
+            return cartItemRepository.save(item);
+        });
+    }
+    
+    @Override
+    public boolean remove(Long itemId) {
+        if (!cartItemRepository.existsById(itemId)) {
+            return false;
+        }
+        cartItemRepository.deleteById(itemId);
+        return true;
+    }
+    
+    @Override
+    public void clear(Long userId) {
+        cartItemRepository.deleteByUserId(userId);
+    }
+    
+    @Override
+    public void flush(Long userId) {
+        // Every change is already written
+    }
+}
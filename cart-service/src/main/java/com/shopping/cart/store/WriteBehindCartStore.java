@@ -0,0 +1,512 @@
+package com.shopping.cart.store;
+
+import com.shopping.cart.entity.CartItem;
+import com.shopping.cart.repository.CartItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Keeps active carts in memory, loaded from cart_items on first use and guarded by striped per-user
+// locks. A change is applied in memory and acknowledged once journaled; the lines changed since the
+// last flush are written to cart_items in one transaction every flush-interval, and a user's lines
+// are written right away when the cart is held for checkout. On start the journal is replayed onto
+// cart_items. Item ids are handed out in-process after the highest id in the table or the journal,
+// so a single cart-service instance may run with the store enabled. Depends on the
+// EntityManagerFactory so the final flush on shutdown runs before the datasource is closed.
+@Component
+@ConditionalOnProperty(name = "cart.store.write-behind.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory")
+public class WriteBehindCartStore implements CartStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartStore.class);
+    
+    private final CartItemRepository cartItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Object[] locks;
+    private final Duration flushInterval;
+    private final Duration idleTimeout;
+    private final Path journalDirectory;
+    private final DataSize journalSegmentSize;
+    
+    // Carts in memory by user; a cart's contents are guarded by the user's stripe lock
+    private final Map<Long, UserCart> carts = new ConcurrentHashMap<>();
+    // User of every line in memory, so a line can be found by its id alone
+    private final Map<Long, Long> owners = new ConcurrentHashMap<>();
+    // Users with changes the next flush has to write
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // Serializes writes to cart_items, so an older state of a line never lands after a newer one
+    private final Object flushLock = new Object();
+    private final AtomicLong lastItemId = new AtomicLong();
+    // Counts evicted carts, so a load that raced an eviction can tell
+    private final AtomicLong evictions = new AtomicLong();
+    
+    private CartJournal journal;
+    private ScheduledExecutorService flusher;
+    
+    public WriteBehindCartStore(CartItemRepository cartItemRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${cart.store.write-behind.stripes:64}") int stripes,
+                                @Value("${cart.store.write-behind.flush-interval:1s}") Duration flushInterval,
+                                @Value("${cart.store.write-behind.idle-timeout:30m}") Duration idleTimeout,
+                                @Value("${cart.store.write-behind.journal-dir:data/cart-journal}") Path journalDirectory,
+                                @Value("${cart.store.write-behind.journal-segment-size:16MB}") DataSize journalSegmentSize) {
+        this.cartItemRepository = cartItemRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // Always its own transaction, so a flush never joins, or is undone with, a caller's transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+        this.flushInterval = flushInterval;
+        this.idleTimeout = idleTimeout;
+        this.journalDirectory = journalDirectory;
+        this.journalSegmentSize = journalSegmentSize;
+    }
+    
+    @PostConstruct
+    public void start() throws IOException {
+        long highestJournaledId = recover();
+        Long highestStoredId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM cart_items", Long.class);
+        lastItemId.set(Math.max(highestJournaledId, highestStoredId));
+        journal = new CartJournal(journalDirectory, lastItemId.get(), journalSegmentSize.toBytes());
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Write-behind cart store started; new cart items are numbered after {}", lastItemId.get());
+    }
+    
+    @Override
+    public List<CartItem> findByUserId(Long userId) {
+        return withCart(userId, cart -> {
+            List<CartItem> items = new ArrayList<>();
+            for (CartItem line : cart.lines.values()) {
+                items.add(copy(line));
+            }
+            return items;
+        });
+    }
+    
+    @Override
+    public Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId) {
+        return withCart(userId, cart -> Optional.ofNullable(cart.lines.get(productId)).map(WriteBehindCartStore::copy));
+    }
+    
+    @Override
+    public Optional<CartItem> findById(Long itemId) {
+        Long userId = ownerOf(itemId);
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return withCart(userId, cart -> Optional.ofNullable(cart.line(itemId)).map(WriteBehindCartStore::copy));
+    }
+    
+    @Override
+    public CartItem addQuantity(Long userId, Long productId, int quantity) {
+        Change change = withCart(userId, cart -> {
+            CartItem line = cart.lines.get(productId);
+            CompletableFuture<Void> durable;
+            if (line == null) {
+                CartItem created = new CartItem(userId, productId, quantity);
+                created.setId(lastItemId.incrementAndGet());
+                durable = record(cart, created, quantity);
+                cart.lines.put(productId, created);
+                owners.put(created.getId(), userId);
+                line = created;
+            } else {
+                int newQuantity = line.getQuantity() + quantity;
+                durable = record(cart, line, newQuantity);
+                line.setQuantity(newQuantity);
+            }
+            return new Change(durable, copy(line));
+        });
+        CartJournal.await(change.durable);
+        return change.line;
+    }
+    
+    @Override
+    public Optional<CartItem> setQuantity(Long itemId, int quantity) {
+        Long userId = ownerOf(itemId);
+        if (userId == null) {
+            return Optional.empty();
+        }
+        Change change = withCart(userId, cart -> {
+            CartItem line = cart.line(itemId);
+            if (line == null) {
+                return null;
+            }
+            CompletableFuture<Void> durable = record(cart, line, quantity);
+            line.setQuantity(quantity);
+            return new Change(durable, copy(line));
+        });
+        if (change == null) {
+            return Optional.empty();
+        }
+        CartJournal.await(change.durable);
+        return Optional.of(change.line);
+    }
+    
+    @Override
+    public boolean remove(Long itemId) {
+        Long userId = ownerOf(itemId);
+        if (userId == null) {
+            return false;
+        }
+        CompletableFuture<Void> durable = withCart(userId, cart -> {
+            CartItem line = cart.line(itemId);
+            if (line == null) {
+                return null;
+            }
+            CompletableFuture<Void> removed = record(cart, line, 0);
+            cart.lines.remove(line.getProductId());
+            owners.remove(itemId);
+            return removed;
+        });
+        if (durable == null) {
+            return false;
+        }
+        CartJournal.await(durable);
+        return true;
+    }
+    
+    @Override
+    public void clear(Long userId) {
+        CompletableFuture<Void> durable = withCart(userId, cart -> {
+            CompletableFuture<Void> last = null;
+            for (Iterator<CartItem> iterator = cart.lines.values().iterator(); iterator.hasNext(); ) {
+                CartItem line = iterator.next();
+                last = record(cart, line, 0);
+                iterator.remove();
+                owners.remove(line.getId());
+            }
+            return last;
+        });
+        if (durable != null) {
+            CartJournal.await(durable);
+        }
+    }
+    
+    @Override
+    public void flush(Long userId) {
+        synchronized (flushLock) {
+            if (dirtyUsers.remove(userId)) {
+                write(snapshot(List.of(userId)));
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        journal.close();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Final cart flush failed; the journal is replayed on next start", e);
+        }
+    }
+    
+    // Writes every user's changes, then drops the journal segments they cover and evicts idle carts
+    void flush() {
+        synchronized (flushLock) {
+            // Read first: a change journaled up to here marked its user dirty before it was journaled,
+            // so the users drained below cover it
+            long throughSeq = journal.lastSeq();
+            List<Long> userIds = new ArrayList<>();
+            for (Iterator<Long> iterator = dirtyUsers.iterator(); iterator.hasNext(); ) {
+                userIds.add(iterator.next());
+                iterator.remove();
+            }
+            write(snapshot(userIds));
+            
+            try {
+                journal.deleteThrough(throughSeq);
+            } catch (IOException e) {
+                logger.warn("Could not delete flushed cart journal segments", e);
+            }
+        }
+        evictIdle();
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Cart flush failed; retrying on the next interval", e);
+        }
+    }
+    
+    // Marks the line for the next flush and journals its new quantity (zero once removed); the
+    // caller holds the user's lock and applies the change in memory afterwards
+    private CompletableFuture<Void> record(UserCart cart, CartItem line, int quantity) {
+        cart.version++;
+        cart.changed.add(line.getId());
+        dirtyUsers.add(line.getUserId());
+        return journal.append(line.getUserId(), line.getId(), line.getProductId(), quantity);
+    }
+    
+    // Takes the changed lines of the given users; they are handed back if the write fails
+    private Snapshot snapshot(Collection<Long> userIds) {
+        Snapshot snapshot = new Snapshot();
+        for (Long userId : userIds) {
+            synchronized (lock(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart == null) {
+                    continue;
+                }
+                snapshot.versions.put(userId, cart.version);
+                snapshot.changedIds.put(userId, new HashSet<>(cart.changed));
+                for (Long itemId : cart.changed) {
+                    CartItem line = cart.line(itemId);
+                    if (line != null) {
+                        snapshot.lines.add(copy(line));
+                    } else {
+                        snapshot.deletedIds.add(itemId);
+                    }
+                }
+                cart.changed.clear();
+            }
+        }
+        return snapshot;
+    }
+    
+    private void write(Snapshot snapshot) {
+        try {
+            write(snapshot.lines, snapshot.deletedIds);
+        } catch (RuntimeException e) {
+            snapshot.changedIds.forEach((userId, itemIds) -> {
+                synchronized (lock(userId)) {
+                    UserCart cart = carts.get(userId);
+                    if (cart != null) {
+                        cart.changed.addAll(itemIds);
+                        dirtyUsers.add(userId);
+                    }
+                }
+            });
+            throw e;
+        }
+        snapshot.versions.forEach((userId, version) -> {
+            synchronized (lock(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart != null) {
+                    cart.flushedVersion = Math.max(cart.flushedVersion, version);
+                }
+            }
+        });
+    }
+    
+    // Writes the lines and deletes the removed ones by id in one transaction; a line the update
+    // does not find is inserted with its id
+    private void write(List<CartItem> lines, List<Long> deletedIds) {
+        if (lines.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deletedIds.isEmpty()) {
+                jdbcTemplate.batchUpdate("DELETE FROM cart_items WHERE id = ?", deletedIds, deletedIds.size(),
+                        (statement, itemId) -> statement.setLong(1, itemId));
+            }
+            if (lines.isEmpty()) {
+                return;
+            }
+            int[] updated = jdbcTemplate.batchUpdate("UPDATE cart_items SET quantity = ? WHERE id = ?",
+                    lines, lines.size(), (statement, line) -> {
+                        statement.setInt(1, line.getQuantity());
+                        statement.setLong(2, line.getId());
+                    })[0];
+            List<CartItem> missing = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                if (updated[i] == 0) {
+                    missing.add(lines.get(i));
+                }
+            }
+            if (!missing.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?)",
+                        missing, missing.size(), (statement, line) -> {
+                            statement.setLong(1, line.getId());
+                            statement.setLong(2, line.getUserId());
+                            statement.setLong(3, line.getProductId());
+                            statement.setInt(4, line.getQuantity());
+                        });
+            }
+        });
+    }
+    
+    // Drops carts that are fully written and have not been used for idle-timeout
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeout.toMillis();
+        for (Long userId : carts.keySet()) {
+            synchronized (lock(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart != null && cart.version == cart.flushedVersion && cart.lastAccess < cutoff) {
+                    evictions.incrementAndGet();
+                    carts.remove(userId);
+                    cart.lines.values().forEach(line -> owners.remove(line.getId()));
+                }
+            }
+        }
+    }
+    
+    // Writes the last journaled state of every line to cart_items and returns the highest item id
+    // the journal has seen
+    private long recover() throws IOException {
+        List<CartJournalRecord> records = CartJournal.read(journalDirectory);
+        long highestItemId = 0;
+        Map<Long, CartJournalRecord> latest = new LinkedHashMap<>();
+        for (CartJournalRecord record : records) {
+            highestItemId = Math.max(highestItemId, record.getItemId());
+            if (record.getSeq() > 0) {
+                latest.put(record.getItemId(), record);
+            }
+        }
+        
+        if (!latest.isEmpty()) {
+            List<CartItem> lines = new ArrayList<>();
+            List<Long> deletedIds = new ArrayList<>();
+            for (CartJournalRecord record : latest.values()) {
+                if (record.getQuantity() > 0) {
+                    CartItem line = new CartItem(record.getUserId(), record.getProductId(), record.getQuantity());
+                    line.setId(record.getItemId());
+                    lines.add(line);
+                } else {
+                    deletedIds.add(record.getItemId());
+                }
+            }
+            write(lines, deletedIds);
+            logger.info("Replayed {} cart journal records onto {} cart lines", records.size(), latest.size());
+        }
+        CartJournal.deleteAll(journalDirectory);
+        return highestItemId;
+    }
+    
+    // Runs the action on the user's cart under the user's lock. A cart not in memory is read from
+    // cart_items outside the lock, so a slow load only holds up its own user, and the first load to
+    // finish is installed. A load that overlapped an eviction may predate the evicted cart's last
+    // flush, so it is discarded and read again
+    private <T> T withCart(Long userId, Function<UserCart, T> action) {
+        while (true) {
+            UserCart loaded = null;
+            long evictionsBefore = evictions.get();
+            if (!carts.containsKey(userId)) {
+                loaded = new UserCart();
+                for (CartItem item : cartItemRepository.findByUserId(userId)) {
+                    loaded.lines.putIfAbsent(item.getProductId(), copy(item));
+                }
+            }
+            synchronized (lock(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart == null && loaded != null && evictions.get() == evictionsBefore) {
+                    for (CartItem line : loaded.lines.values()) {
+                        owners.put(line.getId(), userId);
+                    }
+                    carts.put(userId, loaded);
+                    cart = loaded;
+                }
+                if (cart != null) {
+                    cart.lastAccess = System.currentTimeMillis();
+                    return action.apply(cart);
+                }
+            }
+        }
+    }
+    
+    // Lines of carts not in memory are looked up in cart_items; a line's user never changes
+    private Long ownerOf(Long itemId) {
+        Long userId = owners.get(itemId);
+        if (userId != null) {
+            return userId;
+        }
+        return cartItemRepository.findById(itemId).map(CartItem::getUserId).orElse(null);
+    }
+    
+    private Object lock(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), locks.length)];
+    }
+    
+    private static CartItem copy(CartItem line) {
+        CartItem copy = new CartItem(line.getUserId(), line.getProductId(), line.getQuantity());
+        copy.setId(line.getId());
+        return copy;
+    }
+    
+    private static final class UserCart {
+        // Lines by product id
+        private final Map<Long, CartItem> lines = new LinkedHashMap<>();
+        // Ids of lines changed or removed since the last flush took them
+        private final Set<Long> changed = new HashSet<>();
+        private long version;
+        private long flushedVersion;
+        private long lastAccess;
+        
+        private CartItem line(Long itemId) {
+            for (CartItem line : lines.values()) {
+                if (line.getId().equals(itemId)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+    }
+    
+    // A journaled change and the line as it stood afterwards
+    private static final class Change {
+        private final CompletableFuture<Void> durable;
+        private final CartItem line;
+        
+        private Change(CompletableFuture<Void> durable, CartItem line) {
+            this.durable = durable;
+            this.line = line;
+        }
+    }
+    
+    private static final class Snapshot {
+        private final List<CartItem> lines = new ArrayList<>();
+        private final List<Long> deletedIds = new ArrayList<>();
+        // Version of each user's cart when it was taken, and the line ids taken from it
+        private final Map<Long, Long> versions = new HashMap<>();
+        private final Map<Long, Set<Long>> changedIds = new HashMap<>();
+    }
+}
@@ -0,0 +1,141 @@
+package com.shopping.cart.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CartJournalTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void recordsAreReadBackInOrderAfterTheHighestIdRecord() throws IOException {
+        CartJournal journal = new CartJournal(directory, 41, 1024 * 1024);
+        journal.append(7, 42, 1, 2);
+        journal.append(7, 43, 2, 1);
+        CartJournal.await(journal.append(7, 42, 1, 0));
+        
+        List<CartJournalRecord> records = CartJournal.read(directory);
+        
+        assertThat(records).extracting(CartJournalRecord::getSeq).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(records.get(0).getItemId()).isEqualTo(41);
+        assertThat(records.subList(1, records.size())).extracting(CartJournalRecord::getItemId).containsExactly(42L, 43L, 42L);
+        assertThat(records.get(3).getQuantity()).isZero();
+        assertThat(journal.lastSeq()).isEqualTo(3);
+    }
+    
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        CartJournal journal = new CartJournal(directory, 0, 1024 * 1024);
+        journal.append(7, 1, 1, 1);
+        CartJournal.await(journal.append(7, 2, 2, 1));
+        
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        
+        assertThat(CartJournal.read(directory)).extracting(CartJournalRecord::getItemId).containsExactly(0L, 1L);
+    }
+    
+    @Test
+    void readStopsAtCorruptRecord() throws IOException {
+        CartJournal journal = new CartJournal(directory, 0, 1024 * 1024);
+        journal.append(7, 1, 1, 1);
+        journal.append(7, 2, 2, 1);
+        CartJournal.await(journal.append(7, 3, 3, 1));
+        
+        // Flip a byte inside the second change record
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[2 * CartJournal.RECORD_BYTES + 12] ^= 0x01;
+        Files.write(segment, bytes);
+        
+        assertThat(CartJournal.read(directory)).extracting(CartJournalRecord::getItemId).containsExactly(0L, 1L);
+    }
+    
+    @Test
+    void deleteThroughKeepsSegmentsWithUnflushedRecordsAndTheOpenOne() throws IOException {
+        // Rolls over once a segment holds its highest-id record plus two changes
+        CartJournal journal = new CartJournal(directory, 0, 3L * CartJournal.RECORD_BYTES);
+        for (long itemId = 1; itemId <= 5; itemId++) {
+            CartJournal.await(journal.append(7, itemId, itemId, 1));
+        }
+        assertThat(segmentNames()).containsExactly(
+                "cart-00000000000000000001.journal",
+                "cart-00000000000000000003.journal",
+                "cart-00000000000000000005.journal");
+        
+        // Seq 3 is in the second segment, so only the first is fully flushed
+        journal.deleteThrough(3);
+        assertThat(segmentNames()).containsExactly(
+                "cart-00000000000000000003.journal",
+                "cart-00000000000000000005.journal");
+        
+        // The open segment survives even when everything in it is flushed
+        journal.deleteThrough(journal.lastSeq());
+        assertThat(segmentNames()).containsExactly("cart-00000000000000000005.journal");
+    }
+    
+    @Test
+    void highestItemIdSurvivesDeletionOfTheSegmentsThatUsedIt() throws IOException {
+        CartJournal journal = new CartJournal(directory, 10, 3L * CartJournal.RECORD_BYTES);
+        CartJournal.await(journal.append(7, 11, 1, 1));
+        // Item 12 is created and removed again; after a flush no row and no change record remains
+        CartJournal.await(journal.append(7, 12, 2, 1));
+        CartJournal.await(journal.append(7, 12, 2, 0));
+        journal.deleteThrough(journal.lastSeq());
+        
+        List<CartJournalRecord> records = CartJournal.read(directory);
+        
+        assertThat(records).extracting(CartJournalRecord::getSeq).doesNotContain(1L, 2L);
+        assertThat(records).filteredOn(record -> record.getSeq() == 0)
+                .extracting(CartJournalRecord::getItemId).containsExactly(12L);
+    }
+    
+    @Test
+    void closedJournalRefusesRecords() throws IOException {
+        CartJournal journal = new CartJournal(directory, 0, 1024 * 1024);
+        journal.close();
+        
+        assertThatThrownBy(() -> journal.append(7, 1, 1, 1)).isInstanceOf(UncheckedIOException.class);
+    }
+    
+    @Test
+    void deleteAllRemovesEverySegment() throws IOException {
+        CartJournal journal = new CartJournal(directory, 0, 2L * CartJournal.RECORD_BYTES);
+        for (long itemId = 1; itemId <= 3; itemId++) {
+            CartJournal.await(journal.append(7, itemId, itemId, 1));
+        }
+        journal.close();
+        
+        CartJournal.deleteAll(directory);
+        
+        assertThat(segmentNames()).isEmpty();
+        assertThat(CartJournal.read(directory)).isEmpty();
+    }
+    
+    private Path onlySegment() throws IOException {
+        List<String> names = segmentNames();
+        assertThat(names).hasSize(1);
+        return directory.resolve(names.get(0));
+    }
+    
+    private List<String> segmentNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+}
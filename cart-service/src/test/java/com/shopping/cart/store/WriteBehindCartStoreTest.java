@@ -0,0 +1,220 @@
+package com.shopping.cart.store;
+
+import com.shopping.cart.entity.CartItem;
+import com.shopping.cart.repository.CartItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Runs the store against an in-memory cart_items table; the flush interval is long enough that
+// nothing reaches the table unless a test flushes or recovers
+class WriteBehindCartStoreTest {
+    
+    private static final RowMapper<CartItem> CART_ITEM = (rs, rowNum) -> {
+        CartItem item = new CartItem(rs.getLong("user_id"), rs.getLong("product_id"), rs.getInt("quantity"));
+        item.setId(rs.getLong("id"));
+        return item;
+    };
+    
+    @TempDir
+    Path journalDirectory;
+    
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private CartItemRepository cartItemRepository;
+    private final List<WriteBehindCartStore> started = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE cart_items (id BIGINT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                + "product_id BIGINT NOT NULL, quantity INT NOT NULL)");
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        
+        cartItemRepository = mock(CartItemRepository.class);
+        when(cartItemRepository.findByUserId(anyLong())).thenAnswer(invocation -> jdbcTemplate.query(
+                "SELECT * FROM cart_items WHERE user_id = ? ORDER BY id", CART_ITEM, invocation.<Long>getArgument(0)));
+        when(cartItemRepository.findById(anyLong())).thenAnswer(invocation -> jdbcTemplate.query(
+                "SELECT * FROM cart_items WHERE id = ?", CART_ITEM, invocation.<Long>getArgument(0)).stream().findFirst());
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (WriteBehindCartStore store : started) {
+            store.stop();
+        }
+    }
+    
+    @Test
+    void recoveryWritesTheLastJournaledStateOfEveryLine() throws IOException {
+        insertRow(1, 7, 100, 1);
+        insertRow(2, 7, 101, 5);
+        crashAfter(2, journal -> {
+            journal.append(7, 1, 100, 3);
+            journal.append(7, 2, 101, 0);
+            journal.append(7, 3, 102, 2);
+            journal.append(7, 4, 103, 1);
+            journal.append(7, 4, 103, 0);
+            return journal.append(7, 3, 102, 4);
+        });
+        
+        start();
+        
+        assertThat(quantitiesById()).containsOnly(entry(1L, 3), entry(3L, 4));
+    }
+    
+    @Test
+    void replayingTheSameJournalTwiceGivesTheSameRows() throws IOException, InterruptedException {
+        insertRow(1, 7, 100, 1);
+        crashAfter(1, journal -> {
+            journal.append(7, 1, 100, 0);
+            journal.append(7, 2, 101, 2);
+            return journal.append(8, 3, 100, 6);
+        });
+        Path copy = Files.createTempDirectory("cart-journal-copy");
+        copySegments(journalDirectory, copy);
+        
+        start().stop();
+        started.clear();
+        Map<Long, Integer> afterFirstReplay = quantitiesById();
+        
+        // As if the first start had died after writing the rows but before deleting the journal
+        CartJournal.deleteAll(journalDirectory);
+        copySegments(copy, journalDirectory);
+        start();
+        
+        assertThat(afterFirstReplay).containsOnly(entry(2L, 2), entry(3L, 6));
+        assertThat(quantitiesById()).isEqualTo(afterFirstReplay);
+    }
+    
+    @Test
+    void newItemsAreNumberedAfterTheHighestJournaledId() throws IOException {
+        insertRow(5, 7, 100, 1);
+        // Item 60 was created and removed before the crash, so no row is left to show it was used
+        crashAfter(59, journal -> {
+            journal.append(8, 60, 100, 1);
+            return journal.append(8, 60, 100, 0);
+        });
+        
+        WriteBehindCartStore store = start();
+        
+        assertThat(store.addQuantity(9L, 200L, 1).getId()).isEqualTo(61L);
+    }
+    
+    @Test
+    void acknowledgedChangesSurviveACrashBeforeTheyAreFlushed() throws IOException {
+        insertRow(1, 7, 100, 1);
+        WriteBehindCartStore crashed = start();
+        started.remove(crashed);
+        
+        Long added = crashed.addQuantity(7L, 101L, 2).getId();
+        crashed.addQuantity(7L, 100L, 4);
+        crashed.setQuantity(added, 3);
+        Long removed = crashed.addQuantity(8L, 100L, 1).getId();
+        assertThat(crashed.remove(removed)).isTrue();
+        assertThat(quantitiesById()).containsOnly(entry(1L, 1));
+        
+        // The crashed store is never stopped, so nothing but its journal carries the changes
+        WriteBehindCartStore recovered = start();
+        
+        assertThat(quantitiesById()).containsOnly(entry(1L, 5), entry(added, 3));
+        assertThat(recovered.findByUserId(7L)).extracting(CartItem::getQuantity).containsExactly(5, 3);
+        assertThat(recovered.findByUserId(8L)).isEmpty();
+    }
+    
+    @Test
+    void flushForCheckoutWritesOnlyThatUsersLines() throws IOException {
+        WriteBehindCartStore store = start();
+        Long checkedOut = store.addQuantity(7L, 100L, 2).getId();
+        Long other = store.addQuantity(8L, 100L, 1).getId();
+        
+        store.flush(7L);
+        assertThat(quantitiesById()).containsOnly(entry(checkedOut, 2));
+        
+        store.flush();
+        assertThat(quantitiesById()).containsOnly(entry(checkedOut, 2), entry(other, 1));
+    }
+    
+    @Test
+    void flushDeletesRemovedLines() throws IOException {
+        insertRow(1, 7, 100, 1);
+        WriteBehindCartStore store = start();
+        
+        Optional<CartItem> line = store.findByUserIdAndProductId(7L, 100L);
+        assertThat(line).isPresent();
+        assertThat(store.remove(line.get().getId())).isTrue();
+        store.addQuantity(7L, 101L, 1);
+        store.flush();
+        
+        assertThat(quantitiesById()).containsOnly(entry(2L, 1));
+        assertThat(store.findById(1L)).isEmpty();
+    }
+    
+    private WriteBehindCartStore start() throws IOException {
+        WriteBehindCartStore store = new WriteBehindCartStore(cartItemRepository, jdbcTemplate, transactionManager,
+                4, Duration.ofHours(1), Duration.ofMinutes(30), journalDirectory, DataSize.ofMegabytes(1));
+        store.start();
+        started.add(store);
+        return store;
+    }
+    
+    // Journals the records and waits for the last one, then abandons the journal without closing it
+    private void crashAfter(long highestItemId, Appender appender) throws IOException {
+        CartJournal journal = new CartJournal(journalDirectory, highestItemId, 1024 * 1024);
+        CartJournal.await(appender.append(journal));
+    }
+    
+    private void insertRow(long id, long userId, long productId, int quantity) {
+        jdbcTemplate.update("INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?)",
+                id, userId, productId, quantity);
+    }
+    
+    private Map<Long, Integer> quantitiesById() {
+        return jdbcTemplate.query("SELECT id, quantity FROM cart_items", rs -> {
+            Map<Long, Integer> quantities = new HashMap<>();
+            while (rs.next()) {
+                quantities.put(rs.getLong("id"), rs.getInt("quantity"));
+            }
+            return quantities;
+        });
+    }
+    
+    private static void copySegments(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+    
+    private interface Appender {
+        CompletableFuture<Void> append(CartJournal journal);
+    }
+}
@@ -77,6 +77,11 @@ const orderApi = axios.create({
       if (token) {
         config.headers.Authorization = `Bearer ${token}`;
       }
+      // Lets services with a read replica serve this user's reads from the primary right after they write
+      const user = JSON.parse(localStorage.getItem('user') || 'null');
+      if (user?.id) {
+        config.headers['X-User-Id'] = user.id;
+      }
       return config;
     },
     (error) => Promise.reject(error)
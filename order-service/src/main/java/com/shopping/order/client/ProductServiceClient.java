@@ -1,82 +1,228 @@
 package com.shopping.order.client;
 
+import com.shopping.order.dto.OrderItemRequest;
 import com.shopping.order.dto.ProductDto;
+import com.shopping.order.dto.StockAvailabilityDto;
+import com.shopping.order.dto.StockResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Component
 public class ProductServiceClient {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceClient.class);
+    // Largest batch product-service accepts (ProductService.MAX_BATCH_SIZE); larger lookups are split
+    static final int MAX_BATCH_SIZE = 500;
     
     private final RestTemplate restTemplate;
+    private final ProductServiceGuard guard;
     private final String productServiceUrl;
+    private final SingleFlight<Long, ProductDto> batchCalls;
+    private final ExecutorService lookupExecutor;
+    private final Duration lookupDeadline;
     
     public ProductServiceClient(RestTemplate restTemplate,
-                               @Value("${product.service.url}") String productServiceUrl) {
+                               ProductServiceGuard guard,
+                               MeterRegistry meterRegistry,
+                               @Value("${product.service.url}") String productServiceUrl,
+                               @Value("${product.client.lookup.threads:16}") int lookupThreads,
+                               @Value("${product.client.lookup.deadline:3s}") Duration lookupDeadline) {
         this.restTemplate = restTemplate;
+        this.guard = guard;
         this.productServiceUrl = productServiceUrl;
+        this.lookupDeadline = lookupDeadline;
+        // Bounded in threads and queue; lookups beyond that are rejected and treated as unanswered
+        ThreadPoolExecutor lookupPool = new ThreadPoolExecutor(lookupThreads, lookupThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(lookupThreads * 8), runnable -> {
+                    Thread thread = new Thread(runnable, "product-lookup");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        lookupPool.allowCoreThreadTimeOut(true);
+        this.lookupExecutor = lookupPool;
+        this.batchCalls = new SingleFlight<>(meterRegistry, "product-batch");
     }
     
-    public ProductDto getProduct(Long productId) {
-        try {
-            String url = productServiceUrl + "/api/products/" + productId;
-            return restTemplate.getForObject(url, ProductDto.class);
-        } catch (Exception e) {
-            logger.error("Error fetching product from Product Service: " + productId, e);
-            return null;
+    // Orders must price from current data, so every call goes to product-service, and an
+    // unavailable product-service is reported instead of pricing from it. Concurrent callers for
+    // the same products share the call already in flight instead of each making their own
+    public Map<Long, ProductDto> getProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
         }
+        return batchCalls.executeAll(productIds, this::fetchProducts);
     }
     
-    public boolean checkAvailability(Long productId, Integer quantity) {
+    // getProducts on the lookup executor; fails with ProductServiceUnavailableException when
+    // product-service cannot answer within the lookup deadline
+    public CompletableFuture<Map<Long, ProductDto>> getProductsAsync(Collection<Long> productIds) {
+        return lookupAsync(() -> getProducts(productIds), "products " + productIds);
+    }
+    
+    // checkAvailability on the lookup executor; fails like getProductsAsync
+    public CompletableFuture<Map<Long, StockAvailabilityDto>> checkAvailabilityAsync(Map<Long, Integer> quantities) {
+        return lookupAsync(() -> checkAvailability(quantities), "availability of " + quantities.keySet());
+    }
+    
+    // One round trip for any number of products; products missing from the result are unknown
+    public Map<Long, StockAvailabilityDto> checkAvailability(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Collections.emptyMap();
+        }
         try {
-            String url = productServiceUrl + "/api/products/" + productId + "/available?quantity=" + quantity;
-            Boolean available = restTemplate.getForObject(url, Boolean.class);
-            return available != null && available;
+            String url = productServiceUrl + "/api/products/availability";
+            
+            List<Map<String, Object>> items = new ArrayList<>();
+            quantities.forEach((productId, quantity) -> {
+                Map<String, Object> item = new HashMap<>();
+                item.put("productId", productId);
+                item.put("quantity", quantity);
+                items.add(item);
+            });
+            Map<String, Object> body = new HashMap<>();
+            body.put("items", items);
+            
+            StockAvailabilityDto[] results =
+                    guard.call(() -> restTemplate.postForObject(url, body, StockAvailabilityDto[].class));
+            if (results == null) {
+                return Collections.emptyMap();
+            }
+            Map<Long, StockAvailabilityDto> availability = new HashMap<>();
+            for (StockAvailabilityDto result : results) {
+                availability.put(result.getProductId(), result);
+            }
+            return availability;
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error checking availability from Product Service: " + productId, e);
-            return false;
+            logger.error("Error checking availability from Product Service: " + quantities.keySet(), e);
+            return Collections.emptyMap();
         }
     }
     
-    public void reduceStock(Long productId, Integer quantity) {
+    public List<StockResponse> reserveStock(List<OrderItemRequest> items) {
         try {
-            ProductDto product = getProduct(productId);
-            if (product == null) {
-                throw new IllegalArgumentException("Product not found: " + productId);
-            }
+            String url = productServiceUrl + "/api/products/stock/reserve";
             
-            int newStock = product.getStock() - quantity;
-            if (newStock < 0) {
-                throw new IllegalArgumentException("Insufficient stock for product: " + productId);
-            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            
+            Map<String, List<OrderItemRequest>> body = new HashMap<>();
+            body.put("items", items);
             
-            String url = productServiceUrl + "/api/products/" + productId + "/stock";
+            HttpEntity<Map<String, List<OrderItemRequest>>> request = new HttpEntity<>(body, headers);
+            
+            StockResponse[] reserved = guard.call(() -> restTemplate.postForObject(url, request, StockResponse[].class));
+            
+            logger.info("Reserved stock for {} order lines", items.size());
+            return reserved != null ? Arrays.asList(reserved) : Collections.emptyList();
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new IllegalArgumentException("Insufficient stock for one or more products");
+        } catch (HttpClientErrorException.BadRequest e) {
+            throw new IllegalArgumentException("Invalid stock reservation: " + e.getResponseBodyAsString());
+        } catch (Exception e) {
+            logger.error("Error reserving stock for order lines", e);
+            throw new RuntimeException("Failed to reserve stock", e);
+        }
+    }
+    
+    public void confirmHold(Long holdId, List<OrderItemRequest> items) {
+        try {
+            String url = productServiceUrl + "/api/products/holds/" + holdId + "/confirm";
             
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             
-            Map<String, Integer> body = new HashMap<>();
-            body.put("stock", newStock);
+            Map<String, List<OrderItemRequest>> body = new HashMap<>();
+            body.put("items", items);
             
-            HttpEntity<Map<String, Integer>> request = new HttpEntity<>(body, headers);
+            HttpEntity<Map<String, List<OrderItemRequest>>> request = new HttpEntity<>(body, headers);
             
-            restTemplate.exchange(url, HttpMethod.PUT, request, ProductDto.class);
+            guard.call(() -> restTemplate.postForObject(url, request, Void.class));
             
-            logger.info("Reduced stock for product {} by {}", productId, quantity);
+            logger.info("Confirmed stock hold {} for {} order lines", holdId, items.size());
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new IllegalArgumentException("Stock hold " + holdId + " has expired or was released");
+        } catch (HttpClientErrorException.BadRequest e) {
+            throw new IllegalArgumentException("Stock hold " + holdId + " not found or does not match the order");
         } catch (Exception e) {
-            logger.error("Error reducing stock for product: " + productId, e);
-            throw new RuntimeException("Failed to reduce stock", e);
+            logger.error("Error confirming stock hold: " + holdId, e);
+            throw new RuntimeException("Failed to confirm stock hold", e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+    
+    private Map<Long, ProductDto> fetchProducts(List<Long> productIds) {
+        try {
+            String url = productServiceUrl + "/api/products/pricing/batch";
+            Map<Long, ProductDto> productsById = new HashMap<>();
+            for (int from = 0; from < productIds.size(); from += MAX_BATCH_SIZE) {
+                List<Long> batch = productIds.subList(from, Math.min(from + MAX_BATCH_SIZE, productIds.size()));
+                ProductDto[] products = guard.call(() -> restTemplate.postForObject(url, batch, ProductDto[].class));
+                if (products != null) {
+                    for (ProductDto product : products) {
+                        productsById.put(product.getId(), product);
+                    }
+                }
+            }
+            return productsById;
+        } catch (ProductServiceUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error fetching products from Product Service: " + productIds, e);
+            return Collections.emptyMap();
+        }
+    }
+    
+    private <T> CompletableFuture<Map<Long, T>> lookupAsync(Supplier<Map<Long, T>> lookup, String description) {
+        try {
+            return CompletableFuture.supplyAsync(lookup, lookupExecutor)
+                    .orTimeout(lookupDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        if (e instanceof TimeoutException) {
+                            throw new ProductServiceUnavailableException(
+                                    "No answer from Product Service within " + lookupDeadline + " for " + description, e);
+                        }
+                        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                    });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new ProductServiceUnavailableException("Product lookups saturated; not looking up " + description, e));
         }
     }
 }
@@ -0,0 +1,83 @@
+package com.shopping.order.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+// Circuit breaker and bulkhead in front of product-service. Once failure-rate-threshold percent of
+// the last window-size calls failed, the circuit opens and calls fail at once for open-duration;
+// then half-open-calls probes decide whether it closes again. Failures are connection errors,
+// timeouts and 5xx answers; a 4xx is product-service's answer and counts as a success. The
+// bulkhead caps concurrent calls so a slow product-service cannot take every request thread; it
+// defaults to the connection pool's per-route limit and pool-timeout, so a call is only refused
+// once every connection to product-service has been busy for that long.
+// Publishes resilience4j.circuitbreaker.* and resilience4j.bulkhead.* tagged name=product-service
+@Component
+public class ProductServiceGuard {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductServiceGuard.class);
+    private static final String NAME = "product-service";
+    
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    
+    public ProductServiceGuard(MeterRegistry meterRegistry,
+                               @Value("${product.client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                               @Value("${product.client.circuit-breaker.window-size:20}") int windowSize,
+                               @Value("${product.client.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                               @Value("${product.client.circuit-breaker.open-duration:10s}") Duration openDuration,
+                               @Value("${product.client.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                               @Value("${product.client.bulkhead.max-concurrent-calls:${product.client.http.max-connections-per-route:50}}") int maxConcurrentCalls,
+                               @Value("${product.client.bulkhead.max-wait:${product.client.http.pool-timeout:1s}}") Duration maxWait) {
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(windowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .recordException(e -> e instanceof ResourceAccessException || e instanceof HttpServerErrorException)
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+        this.circuitBreaker = circuitBreakers.circuitBreaker(NAME);
+        this.bulkhead = bulkheads.bulkhead(NAME);
+        this.circuitBreaker.getEventPublisher().onStateTransition(event ->
+                logger.warn("Product Service circuit breaker: {}", event.getStateTransition()));
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+    }
+    
+    // Runs the call, or throws ProductServiceUnavailableException when it may not run or failed in a
+    // way that counts against the circuit. Other exceptions, such as a 404, pass through unchanged
+    public <T> T call(Supplier<T> call) {
+        try {
+            return circuitBreaker.executeSupplier(() -> bulkhead.executeSupplier(call));
+        } catch (CallNotPermittedException e) {
+            throw new ProductServiceUnavailableException("Product Service circuit is open", e);
+        } catch (BulkheadFullException e) {
+            throw new ProductServiceUnavailableException("Too many concurrent calls to Product Service", e);
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            throw new ProductServiceUnavailableException("Product Service call failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.shopping.order.controller;
 
+import com.shopping.order.client.ProductServiceUnavailableException;
 import com.shopping.order.dto.CreateOrderRequest;
 import com.shopping.order.entity.Order;
 import com.shopping.order.entity.OrderStatus;
@@ -34,6 +35,9 @@ public class OrderController {
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid order request: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             logger.error("Error creating order", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
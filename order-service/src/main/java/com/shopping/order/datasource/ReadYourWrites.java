@@ -0,0 +1,54 @@
+package com.shopping.order.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+// Remembers which callers committed a write in the last window, so their reads can be pinned to
+// the primary until the replica has caught up. A zero window turns it off.
+public class ReadYourWrites {
+    
+    private static final ThreadLocal<String> CALLER = new ThreadLocal<>();
+    
+    private final Cache<String, Boolean> recentWriters;
+    
+    public ReadYourWrites(Duration window, long maxCallers) {
+        this.recentWriters = window.isZero() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxCallers)
+                .build();
+    }
+    
+    boolean isEnabled() {
+        return recentWriters != null;
+    }
+    
+    boolean wroteRecently(String caller) {
+        return recentWriters != null && recentWriters.getIfPresent(caller) != null;
+    }
+    
+    void bindCaller(String caller) {
+        CALLER.set(caller);
+    }
+    
+    void unbindCaller() {
+        CALLER.remove();
+    }
+    
+    // Stamped after commit, so the window runs from the moment the write became visible on the primary
+    void recordWriteOnCommit() {
+        String caller = CALLER.get();
+        if (recentWriters == null || caller == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(caller, Boolean.TRUE);
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.shopping.order.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Identifies the caller by a request header. Writes made while handling the request are recorded
+// against it, and if the caller wrote recently the whole request reads from the primary
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    
+    private final ReadYourWrites readYourWrites;
+    private final String callerHeader;
+    
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites, String callerHeader) {
+        this.readYourWrites = readYourWrites;
+        this.callerHeader = callerHeader;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String caller = request.getHeader(callerHeader);
+        if (caller == null || caller.isBlank() || !readYourWrites.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        readYourWrites.bindCaller(caller);
+        try {
+            if (readYourWrites.wroteRecently(caller)) {
+                try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+                    chain.doFilter(request, response);
+                }
+            } else {
+                chain.doFilter(request, response);
+            }
+        } finally {
+            readYourWrites.unbindCaller();
+        }
+    }
+}
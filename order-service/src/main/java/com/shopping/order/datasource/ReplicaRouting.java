@@ -0,0 +1,35 @@
+package com.shopping.order.datasource;
+
+// Read-only transactions go to the replica when one is configured. Pinning the current thread sends
+// them to the primary instead, for reads whose result must not lag behind writes, such as the
+// order history of a user who has just checked out. The pin only decides where a transaction's
+// connection comes from, so it has to be taken before the transaction first touches the database.
+// Without a replica it has no effect.
+public final class ReplicaRouting {
+    
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+    
+    private ReplicaRouting() {
+    }
+    
+    // Nests: closing an inner pin leaves an outer one in place
+    public static PrimaryPin pinPrimary() {
+        boolean alreadyPinned = isPinned();
+        PINNED.set(Boolean.TRUE);
+        return () -> {
+            if (!alreadyPinned) {
+                PINNED.remove();
+            }
+        };
+    }
+    
+    static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+    
+    public interface PrimaryPin extends AutoCloseable {
+        
+        @Override
+        void close();
+    }
+}
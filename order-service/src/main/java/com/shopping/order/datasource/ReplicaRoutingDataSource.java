@@ -0,0 +1,32 @@
+package com.shopping.order.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Consulted when a connection is actually opened. Behind a LazyConnectionDataSourceProxy that is
+// the first statement of a transaction, by which point its read-only flag is known
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+    
+    private final ReadYourWrites readYourWrites;
+    
+    public ReplicaRoutingDataSource(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Target.PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return ReplicaRouting.isPinned() ? Target.PRIMARY : Target.REPLICA;
+        }
+        readYourWrites.recordWriteOnCommit();
+        return Target.PRIMARY;
+    }
+}
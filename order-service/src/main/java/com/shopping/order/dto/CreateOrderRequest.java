@@ -15,6 +15,9 @@ public class CreateOrderRequest {
     @Valid
     private List<OrderItemRequest> items;
     
+    // Optional stock hold taken at checkout; when present it is confirmed instead of reserving stock
+    private Long holdId;
+    
     public CreateOrderRequest() {
     }
     
@@ -38,4 +41,12 @@ public class CreateOrderRequest {
     public void setItems(List<OrderItemRequest> items) {
         this.items = items;
     }
+    
+    public Long getHoldId() {
+        return holdId;
+    }
+    
+    public void setHoldId(Long holdId) {
+        this.holdId = holdId;
+    }
 }
@@ -1,13 +1,21 @@
 package com.shopping.order.repository;
 
 import com.shopping.order.entity.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     
+    // Items are fetched with their orders, inside the read-only transaction, instead of lazily
+    // while the response is written, which would be outside it and on the primary
+    @EntityGraph(attributePaths = "items")
     List<Order> findByUserId(Long userId);
+    
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
 }
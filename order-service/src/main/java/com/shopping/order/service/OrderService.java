@@ -1,9 +1,11 @@
 package com.shopping.order.service;
 
 import com.shopping.order.client.ProductServiceClient;
+import com.shopping.order.client.ProductServiceUnavailableException;
 import com.shopping.order.dto.CreateOrderRequest;
 import com.shopping.order.dto.OrderItemRequest;
 import com.shopping.order.dto.ProductDto;
+import com.shopping.order.dto.StockAvailabilityDto;
 import com.shopping.order.entity.Order;
 import com.shopping.order.entity.OrderItem;
 import com.shopping.order.entity.OrderStatus;
@@ -15,8 +17,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -33,14 +42,38 @@ public class OrderService {
     }
     
     public Order createOrder(CreateOrderRequest request) {
+        // Pricing and availability are requested concurrently, so validation costs one round trip.
+        // Stock under a hold is already set aside, so only orders without one check availability
+        Set<Long> productIds = request.getItems().stream()
+                .map(OrderItemRequest::getProductId)
+                .collect(Collectors.toSet());
+        CompletableFuture<Map<Long, ProductDto>> productsLookup = productServiceClient.getProductsAsync(productIds);
+        
+        boolean held = request.getHoldId() != null;
+        CompletableFuture<Map<Long, StockAvailabilityDto>> availabilityLookup =
+                CompletableFuture.completedFuture(Collections.emptyMap());
+        if (!held) {
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (OrderItemRequest itemRequest : request.getItems()) {
+                quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
+            }
+            availabilityLookup = productServiceClient.checkAvailabilityAsync(quantities);
+        }
+        Map<Long, ProductDto> products = join(productsLookup);
+        Map<Long, StockAvailabilityDto> availability = join(availabilityLookup);
+        
         // Validate all products and check availability
         for (OrderItemRequest itemRequest : request.getItems()) {
-            ProductDto product = productServiceClient.getProduct(itemRequest.getProductId());
+            ProductDto product = products.get(itemRequest.getProductId());
             if (product == null) {
                 throw new IllegalArgumentException("Product not found: " + itemRequest.getProductId());
             }
+            if (held) {
+                continue;
+            }
             
-            if (!productServiceClient.checkAvailability(itemRequest.getProductId(), itemRequest.getQuantity())) {
+            StockAvailabilityDto itemAvailability = availability.get(itemRequest.getProductId());
+            if (itemAvailability == null || !itemAvailability.isAvailable()) {
                 throw new IllegalArgumentException("Insufficient stock for product: " + product.getName());
             }
         }
@@ -55,7 +88,7 @@ public class OrderService {
         
         // Add order items
         for (OrderItemRequest itemRequest : request.getItems()) {
-            ProductDto product = productServiceClient.getProduct(itemRequest.getProductId());
+            ProductDto product = products.get(itemRequest.getProductId());
             
             OrderItem orderItem = new OrderItem(
                     itemRequest.getProductId(),
@@ -75,9 +108,12 @@ public class OrderService {
         Order savedOrder = orderRepository.save(order);
         
         try {
-            // Reduce stock for all products
-            for (OrderItemRequest itemRequest : request.getItems()) {
-                productServiceClient.reduceStock(itemRequest.getProductId(), itemRequest.getQuantity());
+            if (held) {
+                // Confirming checks the hold covers exactly these lines; its stock was taken when it was created
+                productServiceClient.confirmHold(request.getHoldId(), request.getItems());
+            } else {
+                // Reserve stock for all lines in one call; product-service applies it all or nothing
+                productServiceClient.reserveStock(request.getItems());
             }
             
             // Update order status to CONFIRMED
@@ -86,6 +122,11 @@ public class OrderService {
             
             logger.info("Order created successfully: {}", savedOrder.getId());
             
+        } catch (ProductServiceUnavailableException e) {
+            logger.warn("Product Service unavailable, marking order as FAILED: " + e.getMessage());
+            savedOrder.setStatus(OrderStatus.FAILED);
+            orderRepository.save(savedOrder);
+            throw e;
         } catch (Exception e) {
             logger.error("Failed to reduce stock, marking order as FAILED", e);
             savedOrder.setStatus(OrderStatus.FAILED);
@@ -96,12 +137,15 @@ public class OrderService {
         return savedOrder;
     }
     
+    // Read-only, so these run on the replica when one is configured
+    @Transactional(readOnly = true)
     public List<Order> getOrdersByUserId(Long userId) {
         return orderRepository.findByUserId(userId);
     }
     
+    @Transactional(readOnly = true)
     public Optional<Order> getOrderById(Long orderId) {
-        return orderRepository.findById(orderId);
+        return orderRepository.findWithItemsById(orderId);
     }
     
     public Order updateOrderStatus(Long orderId, OrderStatus status) {
@@ -111,4 +155,16 @@ public class OrderService {
         order.setStatus(status);
         return orderRepository.save(order);
     }
+    
+    // Rethrows what failed the lookup, e.g. ProductServiceUnavailableException, without the wrapper
+    private static <T> T join(CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
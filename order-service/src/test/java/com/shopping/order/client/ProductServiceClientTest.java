@@ -0,0 +1,92 @@
+package com.shopping.order.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.order.dto.ProductDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class ProductServiceClientTest {
+    
+    private static final String URL = "http://product-service";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private MockRestServiceServer server;
+    private ProductServiceClient client;
+    
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProductServiceGuard guard = new ProductServiceGuard(meterRegistry, 50, 20, 10,
+                Duration.ofSeconds(10), 3, 10, Duration.ofSeconds(1));
+        client = new ProductServiceClient(restTemplate, guard, meterRegistry, URL, 2, Duration.ofSeconds(3));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+    
+    @Test
+    void lookupsLargerThanABatchAreSplitAndMerged() {
+        expectBatches(3);
+        List<Long> ids = LongStream.rangeClosed(1, 1201).boxed().toList();
+        
+        Map<Long, ProductDto> products = client.getProducts(ids);
+        
+        server.verify();
+        assertThat(batchSizes).containsExactly(500, 500, 201);
+        assertThat(products).hasSize(1201).containsKeys(1L, 500L, 501L, 1201L);
+        assertThat(products.get(1201L).getName()).isEqualTo("Product 1201");
+    }
+    
+    @Test
+    void lookupsUpToABatchTakeOneCall() {
+        expectBatches(1);
+        List<Long> ids = LongStream.rangeClosed(1, ProductServiceClient.MAX_BATCH_SIZE).boxed().toList();
+        
+        Map<Long, ProductDto> products = client.getProducts(ids);
+        
+        server.verify();
+        assertThat(batchSizes).containsExactly(ProductServiceClient.MAX_BATCH_SIZE);
+        assertThat(products).hasSize(ProductServiceClient.MAX_BATCH_SIZE);
+    }
+    
+    // Each batch is answered with a product for every id it asked for
+    private void expectBatches(int count) {
+        server.expect(times(count), requestTo(URL + "/api/products/pricing/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(request -> {
+                    Long[] ids = objectMapper.readValue(((MockClientHttpRequest) request).getBodyAsBytes(), Long[].class);
+                    batchSizes.add(ids.length);
+                    List<ProductDto> products = new ArrayList<>();
+                    for (Long id : ids) {
+                        products.add(new ProductDto(id, "Product " + id, BigDecimal.TEN));
+                    }
+                    return withSuccess(objectMapper.writeValueAsBytes(products), MediaType.APPLICATION_JSON)
+                            .createResponse(request);
+                });
+    }
+}
@@ -0,0 +1,184 @@
+package com.shopping.order.datasource;
+
+import com.shopping.order.config.ReplicaDataSourceConfig;
+import com.shopping.order.entity.Order;
+import com.shopping.order.entity.OrderStatus;
+import com.shopping.order.repository.OrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Routes through the DataSource ReplicaDataSourceConfig builds, over two H2 databases, with
+// Hibernate under JpaTransactionManager as the service runs it. Order 1 has a different total in
+// each database, so every read shows which one Hibernate's connection came from
+class ReplicaRoutingTest {
+    
+    private static final Duration WINDOW = Duration.ofMillis(300);
+    private static final String CALLER_HEADER = "X-User-Id";
+    private static final BigDecimal PRIMARY_TOTAL = new BigDecimal("1.00");
+    private static final BigDecimal REPLICA_TOTAL = new BigDecimal("2.00");
+    
+    private JdbcTemplate primaryJdbc;
+    private JdbcTemplate replicaJdbc;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private OrderRepository orderRepository;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private ReadYourWritesFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database(PRIMARY_TOTAL);
+        DataSource replica = database(REPLICA_TOTAL);
+        primaryJdbc = new JdbcTemplate(primary);
+        replicaJdbc = new JdbcTemplate(replica);
+        ReadYourWrites readYourWrites = new ReadYourWrites(WINDOW, 100);
+        DataSource routing = new ReplicaDataSourceConfig().dataSource(primary, replica, readYourWrites);
+        
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(routing);
+        entityManagerFactory.setPackagesToScan("com.shopping.order.entity");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "none",
+                "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy"));
+        entityManagerFactory.afterPropertiesSet();
+        EntityManagerFactory factory = entityManagerFactory.getObject();
+        
+        orderRepository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(factory))
+                .getRepository(OrderRepository.class);
+        JpaTransactionManager transactionManager = new JpaTransactionManager(factory);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        filter = new ReadYourWritesFilter(readYourWrites, CALLER_HEADER);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        entityManagerFactory.destroy();
+    }
+    
+    @Test
+    void readOnlyRepositoryReadGoesToReplica() {
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void savedOrderLandsOnPrimaryOnly() {
+        String readFrom = writeTransaction.execute(status -> {
+            orderRepository.save(new Order(7L, LocalDateTime.now(), OrderStatus.PENDING, BigDecimal.TEN));
+            return source(orderRepository.findWithItemsById(1L).orElseThrow());
+        });
+        
+        assertThat(readFrom).isEqualTo("primary");
+        assertThat(orderCount(primaryJdbc)).isEqualTo(2);
+        assertThat(orderCount(replicaJdbc)).isEqualTo(1);
+    }
+    
+    @Test
+    void pinnedReadOnlyRepositoryReadGoesToPrimary() {
+        try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+            try (ReplicaRouting.PrimaryPin inner = ReplicaRouting.pinPrimary()) {
+                assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+            }
+            assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+        }
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void callerWhoCheckedOutReadsFromPrimaryWithinWindow() throws Exception {
+        inRequest("alice", () -> checkOut(false));
+        
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("primary");
+        assertThat(inRequest("bob", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+        assertThat(inRequest(null, this::readFromReplicaIfAllowed)).isEqualTo("replica");
+        
+        Thread.sleep(WINDOW.toMillis() * 2);
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+    }
+    
+    @Test
+    void rolledBackCheckoutDoesNotPinCaller() throws Exception {
+        inRequest("carol", () -> checkOut(true));
+        
+        assertThat(orderCount(primaryJdbc)).isEqualTo(1);
+        assertThat(inRequest("carol", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+    }
+    
+    private String readFromReplicaIfAllowed() {
+        return readOnlyTransaction.execute(status -> source(orderRepository.findWithItemsById(1L).orElseThrow()));
+    }
+    
+    private String checkOut(boolean rollback) {
+        return writeTransaction.execute(status -> {
+            orderRepository.save(new Order(7L, LocalDateTime.now(), OrderStatus.CONFIRMED, BigDecimal.TEN));
+            if (rollback) {
+                status.setRollbackOnly();
+            }
+            return null;
+        });
+    }
+    
+    private static String source(Order order) {
+        return order.getTotalAmount().compareTo(PRIMARY_TOTAL) == 0 ? "primary" : "replica";
+    }
+    
+    private static Integer orderCount(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM orders", Integer.class);
+    }
+    
+    // Runs the work as the handling of a request from the caller (none when null), through the filter
+    private String inRequest(String caller, Supplier<String> work) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (caller != null) {
+            request.addHeader(CALLER_HEADER, caller);
+        }
+        AtomicReference<String> result = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                result.set(work.get());
+            }
+        });
+        return result.get();
+    }
+    
+    private static DataSource database(BigDecimal total) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                + "order_date TIMESTAMP NOT NULL, status VARCHAR(20) NOT NULL, total_amount DECIMAL(10, 2) NOT NULL)");
+        jdbc.execute("CREATE TABLE order_items (id BIGINT AUTO_INCREMENT PRIMARY KEY, order_id BIGINT NOT NULL, "
+                + "product_id BIGINT NOT NULL, quantity INT NOT NULL, price DECIMAL(10, 2) NOT NULL)");
+        jdbc.update("INSERT INTO orders (user_id, order_date, status, total_amount) VALUES (7, CURRENT_TIMESTAMP, 'CONFIRMED', ?)",
+                total);
+        return dataSource;
+    }
+}
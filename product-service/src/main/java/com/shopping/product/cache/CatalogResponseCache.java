@@ -0,0 +1,319 @@
+package com.shopping.product.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.service.ProductService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// Catalog responses kept as serialized bytes. Each product is serialized once into a fragment; the
+// full list (and a gzipped copy) and requested pages are concatenations of fragments, so serving
+// them is a byte copy. A response is only served for the catalog version it was built against:
+// when the version moves, the products changed through this instance are re-serialized and the
+// rest reused, and if the fragments still do not add up to the new version (a change made by
+// another instance) the catalog is streamed and serialized again. Catalogs larger than
+// max-products are not held in memory and are streamed as before. Pages do not read the catalog
+// version per request: they are served from the current snapshot (or skipped while the catalog is
+// too large) until a product changes through this instance or verify-interval has passed, which
+// bounds how long a change made by another instance goes unseen.
+@Component
+public class CatalogResponseCache {
+    
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final byte[] PAGE_PREFIX = "{\"items\":".getBytes(StandardCharsets.UTF_8);
+    private static final int PAGE_CACHE_SIZE = 256;
+    
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final long maxProducts;
+    private final boolean gzip;
+    private final long verifyIntervalNanos;
+    
+    // Products changed since the current snapshot was built
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Object rebuildLock = new Object();
+    private volatile Snapshot current;
+    // When the catalog version was last read for a snapshot, and whether it was too large to hold
+    private volatile long verifiedAt;
+    private volatile boolean oversized;
+    
+    public CatalogResponseCache(ProductService productService,
+                                ObjectMapper objectMapper,
+                                @Value("${product.response-cache.max-products:10000}") long maxProducts,
+                                @Value("${product.response-cache.gzip:true}") boolean gzip,
+                                @Value("${product.response-cache.verify-interval:1s}") Duration verifyInterval) {
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.maxProducts = maxProducts;
+        this.gzip = gzip;
+        this.verifyIntervalNanos = verifyInterval.toNanos();
+        this.verifiedAt = System.nanoTime() - verifyIntervalNanos;
+    }
+    
+    // The full list for this catalog version, or null when the catalog is too large to hold
+    public CatalogBody getCatalog(CatalogVersion version) {
+        Snapshot snapshot = snapshot(version);
+        return snapshot != null ? snapshot.body : null;
+    }
+    
+    // JSON of the ProductPage after afterId, or null when the catalog is too large to hold. The
+    // version source is only read when the current snapshot may be out of date
+    public byte[] getPage(Supplier<CatalogVersion> versionSource, long afterId, int size) {
+        if (changed.isEmpty() && System.nanoTime() - verifiedAt < verifyIntervalNanos) {
+            if (oversized) {
+                return null;
+            }
+            Snapshot snapshot = current;
+            if (snapshot != null) {
+                return snapshot.page(afterId, size);
+            }
+        }
+        Snapshot snapshot = snapshot(versionSource.get());
+        return snapshot != null ? snapshot.page(afterId, size) : null;
+    }
+    
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        changed.add(event.getProductId());
+    }
+    
+    private Snapshot snapshot(CatalogVersion version) {
+        verifiedAt = System.nanoTime();
+        oversized = version.getProductCount() > maxProducts;
+        if (oversized) {
+            // Nothing is held, so there is nothing the changes could make stale
+            current = null;
+            changed.clear();
+            return null;
+        }
+        Snapshot snapshot = current;
+        if (snapshot != null && sameVersion(snapshot.version, version)) {
+            return snapshot;
+        }
+        // Concurrent requests for a new version wait for one rebuild instead of each doing their own
+        synchronized (rebuildLock) {
+            snapshot = current;
+            if (snapshot != null && sameVersion(snapshot.version, version)) {
+                return snapshot;
+            }
+            try {
+                snapshot = rebuild(snapshot, version);
+            } catch (RuntimeException e) {
+                current = null;
+                throw e;
+            }
+            current = snapshot;
+            return snapshot;
+        }
+    }
+    
+    private Snapshot rebuild(Snapshot previous, CatalogVersion version) {
+        Set<Long> changedIds = new HashSet<>();
+        for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext(); ) {
+            changedIds.add(iterator.next());
+            iterator.remove();
+        }
+        // Hot stock moves without a change event, so hot products are read again on every rebuild
+        changedIds.addAll(productService.getHotProductIds());
+        
+        if (previous != null) {
+            TreeMap<Long, Fragment> fragments = new TreeMap<>(previous.fragments);
+            List<Long> ids = new ArrayList<>(changedIds);
+            for (int from = 0; from < ids.size(); from += ProductService.MAX_BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + ProductService.MAX_BATCH_SIZE, ids.size()));
+                batch.forEach(fragments::remove);
+                for (Product product : productService.getProductsByIds(batch)) {
+                    fragments.put(product.getId(), fragment(product));
+                }
+            }
+            if (addsUpTo(fragments, version)) {
+                return new Snapshot(version, fragments, gzip);
+            }
+        }
+        
+        TreeMap<Long, Fragment> fragments = new TreeMap<>();
+        productService.streamAllProducts(product -> fragments.put(product.getId(), fragment(product)));
+        return new Snapshot(version, fragments, gzip);
+    }
+    
+    private Fragment fragment(Product product) {
+        try {
+            return new Fragment(product.getVersion(), objectMapper.writeValueAsBytes(product));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Whether the fragments are the products the version was computed over: same count, same
+    // highest id, and versions summing to the same total
+    private static boolean addsUpTo(NavigableMap<Long, Fragment> fragments, CatalogVersion version) {
+        long versionSum = 0;
+        for (Fragment fragment : fragments.values()) {
+            versionSum += fragment.version;
+        }
+        long maxId = fragments.isEmpty() ? 0L : fragments.lastKey();
+        return fragments.size() == version.getProductCount()
+                && versionSum == version.getVersionSum()
+                && maxId == version.getMaxId();
+    }
+    
+    private static boolean sameVersion(CatalogVersion a, CatalogVersion b) {
+        return Objects.equals(a.getProductCount(), b.getProductCount())
+                && Objects.equals(a.getVersionSum(), b.getVersionSum())
+                && Objects.equals(a.getMaxId(), b.getMaxId());
+    }
+    
+    // prefix, then the fragments as a JSON array, then suffix
+    private static byte[] join(Iterable<Fragment> fragments, byte[] prefix, byte[] suffix) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(prefix);
+        out.write('[');
+        boolean first = true;
+        for (Fragment fragment : fragments) {
+            if (!first) {
+                out.write(',');
+            }
+            out.writeBytes(fragment.json);
+            first = false;
+        }
+        out.write(']');
+        out.writeBytes(suffix);
+        return out.toByteArray();
+    }
+    
+    // Whether an Accept-Encoding header allows gzip: named, or covered by "*" when it is not, with a
+    // q-value above zero. "gzip;q=0" refuses it, and so does a q-value that does not parse
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
+    }
+    
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    // The serialized catalog list; gzipped is null when precompression is off
+    public static final class CatalogBody {
+        private final byte[] json;
+        private final byte[] gzipped;
+        
+        private CatalogBody(byte[] json, byte[] gzipped) {
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+        
+        public byte[] getJson() {
+            return json;
+        }
+        
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+    
+    private static final class Fragment {
+        private final long version;
+        private final byte[] json;
+        
+        private Fragment(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+    
+    private static final class Snapshot {
+        private final CatalogVersion version;
+        private final NavigableMap<Long, Fragment> fragments;
+        private final CatalogBody body;
+        private final Cache<String, byte[]> pages = Caffeine.newBuilder()
+                .maximumSize(PAGE_CACHE_SIZE)
+                .build();
+        
+        private Snapshot(CatalogVersion version, TreeMap<Long, Fragment> fragments, boolean gzip) {
+            this.version = version;
+            this.fragments = Collections.unmodifiableNavigableMap(fragments);
+            byte[] json = join(fragments.values(), NO_BYTES, NO_BYTES);
+            this.body = new CatalogBody(json, gzip ? gzip(json) : null);
+        }
+        
+        // Same items and cursor as ProductService.getProductPage
+        private byte[] page(long afterId, int size) {
+            return pages.get(afterId + ":" + size, key -> {
+                List<Fragment> items = new ArrayList<>(size);
+                Long lastId = null;
+                for (Map.Entry<Long, Fragment> entry : fragments.tailMap(afterId, false).entrySet()) {
+                    items.add(entry.getValue());
+                    lastId = entry.getKey();
+                    if (items.size() == size) {
+                        break;
+                    }
+                }
+                Long nextAfterId = items.size() == size ? lastId : null;
+                byte[] suffix = (",\"nextAfterId\":" + nextAfterId + "}").getBytes(StandardCharsets.UTF_8);
+                return join(items, PAGE_PREFIX, suffix);
+            });
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.shopping.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+public class ProductCache {
+    
+    private final Cache<Long, Product> cache;
+    
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${product.cache.max-size:10000}") long maxSize,
+                        @Value("${product.cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Publishes cache.gets (hit/miss), cache.evictions and cache.size tagged cache=products
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+    
+    // Loads run inside the cache's per-key compute, so an eviction racing a load waits for it
+    // and removes the value the load produced instead of leaving a stale entry behind
+    public Product get(Long productId, Function<Long, Product> loader) {
+        return cache.get(productId, loader);
+    }
+    
+    public Product getIfPresent(Long productId) {
+        return cache.getIfPresent(productId);
+    }
+    
+    public void put(Product product) {
+        cache.put(product.getId(), product);
+    }
+    
+    public void evict(Long productId) {
+        cache.invalidate(productId);
+    }
+    
+    // Runs before the change feed announces the change, so a client that re-reads on notification
+    // misses the cache instead of getting the old copy
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(event.getProductId());
+    }
+}
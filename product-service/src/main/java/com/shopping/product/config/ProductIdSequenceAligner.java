@@ -0,0 +1,43 @@
+package com.shopping.product.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Products created before the switch from IDENTITY to a pooled sequence already use low ids.
+// On MySQL the sequence is a one-row table that starts at 1, so it is moved past the highest
+// existing id before anything is inserted. The pooled optimizer hands out the block ending at
+// the stored value, hence the extra allocation size.
+// Depends on the EntityManagerFactory so Hibernate has created the sequence table first
+@Component
+@DependsOn("entityManagerFactory")
+public class ProductIdSequenceAligner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductIdSequenceAligner.class);
+    private static final int ALLOCATION_SIZE = 50;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ProductIdSequenceAligner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @PostConstruct
+    public void align() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM products", Long.class);
+            int updated = jdbcTemplate.update("UPDATE product_seq SET next_val = ? WHERE next_val < ?",
+                    maxId + ALLOCATION_SIZE, maxId + ALLOCATION_SIZE);
+            if (updated > 0) {
+                logger.info("Moved product id sequence past existing id {}", maxId);
+            }
+        } catch (DataAccessException e) {
+            // Databases with native sequences have no product_seq table to align
+            logger.debug("Product id sequence table not aligned: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.shopping.product.controller;
+
+import com.shopping.product.dto.ProductChange;
+import com.shopping.product.dto.ProductChangeBatch;
+import com.shopping.product.feed.ProductChangeFeed;
+import com.shopping.product.feed.ProductChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Lets clients that cache product data learn what changed: poll with the seq of the last change
+// seen (optionally waiting for the next one), or keep an event stream open
+@RestController
+@RequestMapping("/api/products/changes")
+@CrossOrigin(origins = "*")
+public class ProductChangeController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeController.class);
+    private static final int MAX_LIMIT = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+    
+    private final ProductChangeFeed feed;
+    private final Duration maxWait;
+    private final Duration streamTimeout;
+    
+    public ProductChangeController(ProductChangeFeed feed,
+                                   @Value("${product.feed.max-wait:30s}") Duration maxWait,
+                                   @Value("${product.feed.stream-timeout:30m}") Duration streamTimeout) {
+        this.feed = feed;
+        this.maxWait = maxWait;
+        this.streamTimeout = streamTimeout;
+    }
+    
+    // Without since, returns the current seq to start from. With wait (seconds), an up-to-date
+    // client is answered when the next change commits, or with no changes once the wait is over
+    @GetMapping
+    public DeferredResult<ResponseEntity<ProductChangeBatch>> getChanges(@RequestParam(required = false) Long since,
+                                                                         @RequestParam(required = false) String epoch,
+                                                                         @RequestParam(defaultValue = "500") Integer limit,
+                                                                         @RequestParam(defaultValue = "0") Integer wait) {
+        if (limit <= 0 || limit > MAX_LIMIT || wait < 0) {
+            logger.warn("Invalid change feed request: limit=" + limit + ", wait=" + wait);
+            DeferredResult<ResponseEntity<ProductChangeBatch>> invalid = new DeferredResult<>();
+            invalid.setResult(ResponseEntity.badRequest().build());
+            return invalid;
+        }
+        
+        long waitMillis = Math.min(Duration.ofSeconds(wait).toMillis(), maxWait.toMillis());
+        ProductChangeBatch batch = feed.read(epoch, since, limit);
+        DeferredResult<ResponseEntity<ProductChangeBatch>> result = new DeferredResult<>(waitMillis);
+        if (since == null || batch.isReset() || !batch.getChanges().isEmpty() || waitMillis == 0) {
+            result.setResult(ResponseEntity.ok(batch));
+            return result;
+        }
+        
+        ProductChangeListener listener = () -> {
+            ProductChangeBatch next = feed.read(epoch, since, limit);
+            if (next.isReset() || !next.getChanges().isEmpty()) {
+                result.setResult(ResponseEntity.ok(next));
+            }
+        };
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(feed.read(epoch, since, limit))));
+        result.onCompletion(() -> feed.unsubscribe(listener));
+        feed.subscribe(listener);
+        return result;
+    }
+    
+    // Server-sent events named product-changed, each with id epoch:seq, so a reconnecting
+    // EventSource resumes through Last-Event-ID. A reset event means changes were missed and
+    // everything cached should be dropped
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestParam(required = false) String epoch,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (lastEventId != null) {
+            int separator = lastEventId.lastIndexOf(':');
+            try {
+                since = Long.parseLong(lastEventId.substring(separator + 1));
+                epoch = separator > 0 ? lastEventId.substring(0, separator) : null;
+            } catch (NumberFormatException e) {
+                // An id this feed did not issue; resynchronize the client
+                since = -1L;
+            }
+        }
+        
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        ChangeStream stream = new ChangeStream(emitter, epoch, since != null ? since : feed.getLatestSeq());
+        emitter.onCompletion(() -> feed.unsubscribe(stream));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> feed.unsubscribe(stream));
+        feed.subscribe(stream);
+        return emitter;
+    }
+    
+    // Writes go through the feed's dispatch thread only, so events leave in seq order
+    private class ChangeStream implements ProductChangeListener {
+        
+        private final SseEmitter emitter;
+        private String epoch;
+        private long seq;
+        private boolean closed;
+        
+        private ChangeStream(SseEmitter emitter, String epoch, long seq) {
+            this.emitter = emitter;
+            this.epoch = epoch;
+            this.seq = seq;
+        }
+        
+        @Override
+        public void changesAvailable() {
+            ProductChangeBatch batch;
+            do {
+                if (closed) {
+                    return;
+                }
+                batch = feed.read(epoch, seq, STREAM_BATCH_SIZE);
+                if (batch.isReset()) {
+                    send(SseEmitter.event().id(eventId(batch.getEpoch(), batch.getSeq())).name("reset").data(batch));
+                } else {
+                    for (ProductChange change : batch.getChanges()) {
+                        send(SseEmitter.event().id(eventId(batch.getEpoch(), change.getSeq()))
+                                .name("product-changed").data(change));
+                    }
+                }
+                epoch = batch.getEpoch();
+                seq = batch.getSeq();
+            } while (!batch.isReset() && batch.getChanges().size() == STREAM_BATCH_SIZE);
+        }
+        
+        // Keeps idle connections open through proxies and finds clients that went away
+        @Override
+        public void heartbeat() {
+            send(SseEmitter.event().comment("heartbeat"));
+        }
+        
+        // A failed send means the client went away; the stream is closed and stops listening
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                closed = true;
+                feed.unsubscribe(this);
+                emitter.completeWithError(e);
+            }
+        }
+        
+        private String eventId(String epoch, long seq) {
+            return epoch + ":" + seq;
+        }
+    }
+}
@@ -1,15 +1,41 @@
 package com.shopping.product.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.product.cache.CatalogResponseCache;
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.dto.ProductImportResult;
+import com.shopping.product.dto.ProductPage;
+import com.shopping.product.dto.ProductPricing;
+import com.shopping.product.dto.ProductSummaryPage;
+import com.shopping.product.dto.StockAvailability;
+import com.shopping.product.dto.StockBucketsRequest;
+import com.shopping.product.dto.StockBucketsResponse;
+import com.shopping.product.dto.StockDecrementRequest;
+import com.shopping.product.dto.StockReservationRequest;
+import com.shopping.product.dto.StockResponse;
 import com.shopping.product.dto.StockUpdateRequest;
 import com.shopping.product.entity.Product;
+import com.shopping.product.search.IndexNotReadyException;
+import com.shopping.product.service.ProductImportService;
 import com.shopping.product.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -19,18 +45,114 @@ public class ProductController {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final ObjectMapper objectMapper;
+    private final CatalogResponseCache catalogResponseCache;
     
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                             ProductImportService productImportService,
+                             ObjectMapper objectMapper,
+                             CatalogResponseCache catalogResponseCache) {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.objectMapper = objectMapper;
+        this.catalogResponseCache = catalogResponseCache;
     }
     
+    // Streams the catalog as a JSON array straight from a database cursor, so memory use
+    // does not depend on catalog size. The ETag is read before the stream so a concurrent change
+    // can only make the body newer than its tag, which costs one extra download but never a stale 304
+    // Catalogs small enough to hold are answered from serialized bytes (gzipped when the client
+    // accepts it) written straight to the response
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<StreamingResponseBody> getAllProducts(WebRequest webRequest,
+                                                                HttpServletRequest request,
+                                                                HttpServletResponse response) throws IOException {
+        CatalogVersion version = productService.getCatalogVersion();
+        if (webRequest.checkNotModified(catalogETag(version))) {
+            return null;
+        }
+        CatalogResponseCache.CatalogBody cached = catalogResponseCache.getCatalog(version);
+        if (cached != null) {
+            writeCatalog(cached, request, response);
+            return null;
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                productService.streamAllProducts(product -> {
+                    try {
+                        generator.writeObject(product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (Exception e) {
+                logger.error("Error streaming products", e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    // Answered from the response cache's bytes when it holds the catalog, otherwise serialized per call.
+    // The catalog version is only read when the cache needs to check its snapshot
+    @GetMapping("/page")
+    public ResponseEntity<?> getProductPage(@RequestParam(defaultValue = "0") Long afterId,
+                                            @RequestParam(defaultValue = "50") Integer size) {
         try {
-            List<Product> products = productService.getAllProducts();
-            return ResponseEntity.ok(products);
+            if (size > 0 && size <= ProductService.MAX_PAGE_SIZE) {
+                byte[] cached = catalogResponseCache.getPage(productService::getCatalogVersion, afterId, size);
+                if (cached != null) {
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cached);
+                }
+            }
+            ProductPage page = productService.getProductPage(afterId, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid page request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error fetching product page after id: " + afterId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/summaries")
+    public ResponseEntity<ProductSummaryPage> getProductSummaryPage(@RequestParam(defaultValue = "0") Long afterId,
+                                                                    @RequestParam(defaultValue = "50") Integer size) {
+        try {
+            ProductSummaryPage page = productService.getProductSummaryPage(afterId, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid summary page request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            logger.error("Error fetching products", e);
+            logger.error("Error fetching product summaries after id: " + afterId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/filter")
+    public ResponseEntity<ProductSummaryPage> filterProducts(@RequestParam(required = false) BigDecimal minPrice,
+                                                             @RequestParam(required = false) BigDecimal maxPrice,
+                                                             @RequestParam(defaultValue = "false") boolean inStock,
+                                                             @RequestParam(defaultValue = "price") String sort,
+                                                             @RequestParam(defaultValue = "asc") String order,
+                                                             @RequestParam(required = false) Long afterId,
+                                                             @RequestParam(defaultValue = "20") Integer size) {
+        try {
+            ProductSummaryPage page = productService.filterProducts(minPrice, maxPrice, inStock, sort, order, afterId, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid filter request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IndexNotReadyException e) {
+            logger.warn(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error filtering products", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -38,8 +160,9 @@ public class ProductController {
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
         try {
+            // A matching If-None-Match turns this into a 304 before the body is serialized
             return productService.getProductById(id)
-                    .map(ResponseEntity::ok)
+                    .map(product -> ResponseEntity.ok().eTag(productETag(product)).body(product))
                     .orElse(ResponseEntity.notFound().build());
         } catch (Exception e) {
             logger.error("Error fetching product with id: " + id, e);
@@ -47,6 +170,67 @@ public class ProductController {
         }
     }
     
+    // Its ETag follows the row version alone, so bucket stock moving does not invalidate it
+    @GetMapping("/{id}/pricing")
+    public ResponseEntity<ProductPricing> getProductPricing(@PathVariable Long id) {
+        try {
+            return productService.getProductPricing(id)
+                    .map(pricing -> ResponseEntity.ok()
+                            .eTag("\"pricing-" + pricing.getId() + "-" + pricing.getVersion() + "\"")
+                            .body(pricing))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            logger.error("Error fetching pricing for product: " + id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/pricing/batch")
+    public ResponseEntity<List<ProductPricing>> getProductPricing(@RequestBody List<Long> ids) {
+        try {
+            List<ProductPricing> pricing = productService.getProductPricing(ids);
+            return ResponseEntity.ok(pricing);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid pricing batch request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error fetching pricing in batch", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<List<Product>> searchProducts(@RequestParam("q") String query,
+                                                        @RequestParam(defaultValue = "20") Integer limit) {
+        try {
+            List<Product> products = productService.searchProducts(query, limit);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid search request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IndexNotReadyException e) {
+            logger.warn(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error searching products for query: " + query, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/batch")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestBody List<Long> ids) {
+        try {
+            List<Product> products = productService.getProductsByIds(ids);
+            return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid batch request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error fetching products in batch", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @PostMapping
     public ResponseEntity<Product> createProduct(@Valid @RequestBody Product product) {
         try {
@@ -61,21 +245,144 @@ public class ProductController {
         }
     }
     
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProductImportResult> importProductsJson(HttpServletRequest request) {
+        try {
+            ProductImportResult result = productImportService.importJson(request.getInputStream());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid product import: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error importing products", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ProductImportResult> importProductsCsv(HttpServletRequest request) {
+        try {
+            ProductImportResult result = productImportService.importCsv(request.getInputStream());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid product import: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error importing products", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    // An If-Match with the product's ETag makes the update conditional: 412 if it changed since
     @PutMapping("/{id}/stock")
     public ResponseEntity<Product> updateStock(@PathVariable Long id, 
-                                               @Valid @RequestBody StockUpdateRequest request) {
+                                               @Valid @RequestBody StockUpdateRequest request,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Product updated = productService.updateStock(id, request.getStock());
-            return ResponseEntity.ok(updated);
+            Product updated = productService.updateStock(id, request.getStock(), expectedVersion(ifMatch, id));
+            return ResponseEntity.ok().eTag(productETag(updated)).body(updated);
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid stock update: " + e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock update precondition failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Stock update for product " + id + " kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             logger.error("Error updating stock for product: " + id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
+    @GetMapping("/{id}/stock/buckets")
+    public ResponseEntity<StockBucketsResponse> getStockBuckets(@PathVariable Long id) {
+        try {
+            StockBucketsResponse buckets = productService.getStockBuckets(id);
+            return ResponseEntity.ok(buckets);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Stock buckets not found: " + e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            logger.error("Error fetching stock buckets for product: " + id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PutMapping("/{id}/stock/buckets")
+    public ResponseEntity<StockBucketsResponse> configureStockBuckets(@PathVariable Long id,
+                                                                      @Valid @RequestBody StockBucketsRequest request) {
+        try {
+            StockBucketsResponse buckets = productService.configureStockBuckets(id, request.getBuckets());
+            return ResponseEntity.ok(buckets);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid stock bucket change: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Stock bucket change for product " + id + " kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error changing stock buckets for product: " + id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/{id}/stock/decrement")
+    public ResponseEntity<StockResponse> decrementStock(@PathVariable Long id,
+                                                        @Valid @RequestBody StockDecrementRequest request) {
+        try {
+            Integer stock = productService.reduceStock(id, request.getQuantity());
+            return ResponseEntity.ok(new StockResponse(id, stock));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid stock decrement: " + e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock decrement rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Stock decrement for product " + id + " kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error decrementing stock for product: " + id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/stock/reserve")
+    public ResponseEntity<List<StockResponse>> reserveStock(@Valid @RequestBody StockReservationRequest request) {
+        try {
+            List<StockResponse> reserved = productService.reserveStock(request.getItems());
+            return ResponseEntity.ok(reserved);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid stock reservation: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock reservation rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Stock reservation kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error reserving stock", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/availability")
+    public ResponseEntity<List<StockAvailability>> checkAvailability(@Valid @RequestBody StockReservationRequest request) {
+        try {
+            List<StockAvailability> availability = productService.checkAvailability(request.getItems());
+            return ResponseEntity.ok(availability);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid availability request: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error checking availability in batch", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @GetMapping("/{id}/available")
     public ResponseEntity<Boolean> checkAvailability(@PathVariable Long id, 
                                                      @RequestParam Integer quantity) {
@@ -87,4 +394,50 @@ public class ProductController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    
+    private static String productETag(Product product) {
+        return "\"" + product.getId() + "-" + product.getVersion() + "\"";
+    }
+    
+    // Reads the version out of a product ETag; "*" or no header means no precondition, and a tag
+    // for another product or in another format matches no version
+    private static Long expectedVersion(String ifMatch, Long id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        String prefix = "\"" + id + "-";
+        if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Falls through to a version no product has
+            }
+        }
+        return -1L;
+    }
+    
+    private static void writeCatalog(CatalogResponseCache.CatalogBody body,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        byte[] bytes = body.getJson();
+        if (body.getGzipped() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (CatalogResponseCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                bytes = body.getGzipped();
+            }
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+    
+    private static String catalogETag(CatalogVersion version) {
+        return "\"catalog-" + version.getProductCount() + "-" + version.getVersionSum()
+                + "-" + version.getMaxId() + "\"";
+    }
 }
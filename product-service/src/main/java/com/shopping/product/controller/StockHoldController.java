@@ -0,0 +1,97 @@
+package com.shopping.product.controller;
+
+import com.shopping.product.dto.StockHoldRequest;
+import com.shopping.product.dto.StockReservationRequest;
+import com.shopping.product.entity.StockHold;
+import com.shopping.product.service.StockHoldService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/products/holds")
+@CrossOrigin(origins = "*")
+public class StockHoldController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldController.class);
+    private final StockHoldService stockHoldService;
+    
+    public StockHoldController(StockHoldService stockHoldService) {
+        this.stockHoldService = stockHoldService;
+    }
+    
+    @PostMapping
+    public ResponseEntity<StockHold> createHold(@Valid @RequestBody StockHoldRequest request) {
+        try {
+            StockHold hold = stockHoldService.createHold(request.getItems(), request.getTtlSeconds());
+            return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid stock hold: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock hold rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Stock hold kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error creating stock hold", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/{holdId}")
+    public ResponseEntity<StockHold> getHold(@PathVariable Long holdId) {
+        try {
+            return stockHoldService.getHold(holdId)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            logger.error("Error fetching stock hold: " + holdId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    // The body is optional; when present its items must match the hold
+    @PostMapping("/{holdId}/confirm")
+    public ResponseEntity<StockHold> confirmHold(@PathVariable Long holdId,
+                                                 @Valid @RequestBody(required = false) StockReservationRequest request) {
+        try {
+            StockHold hold = stockHoldService.confirmHold(holdId, request != null ? request.getItems() : null);
+            return ResponseEntity.ok(hold);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid stock hold confirmation: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock hold confirmation rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            logger.error("Error confirming stock hold: " + holdId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/{holdId}/release")
+    public ResponseEntity<StockHold> releaseHold(@PathVariable Long holdId) {
+        try {
+            StockHold hold = stockHoldService.releaseHold(holdId);
+            return ResponseEntity.ok(hold);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Stock hold not found: " + e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Stock hold release rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ConcurrencyFailureException e) {
+            logger.warn("Release of stock hold " + holdId + " kept conflicting with concurrent writes");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Error releasing stock hold: " + holdId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
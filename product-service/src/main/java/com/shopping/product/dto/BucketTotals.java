@@ -0,0 +1,40 @@
+package com.shopping.product.dto;
+
+public class BucketTotals {
+    private Long productId;
+    private Long stock;
+    private Long version;
+    
+    public BucketTotals() {
+    }
+    
+    public BucketTotals(Long productId, Long stock, Long version) {
+        this.productId = productId;
+        this.stock = stock;
+        this.version = version;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Long getStock() {
+        return stock;
+    }
+    
+    public void setStock(Long stock) {
+        this.stock = stock;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
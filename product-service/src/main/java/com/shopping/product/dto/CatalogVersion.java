@@ -0,0 +1,40 @@
+package com.shopping.product.dto;
+
+public class CatalogVersion {
+    private Long productCount;
+    private Long versionSum;
+    private Long maxId;
+    
+    public CatalogVersion() {
+    }
+    
+    public CatalogVersion(Long productCount, Long versionSum, Long maxId) {
+        this.productCount = productCount;
+        this.versionSum = versionSum;
+        this.maxId = maxId;
+    }
+    
+    public Long getProductCount() {
+        return productCount;
+    }
+    
+    public void setProductCount(Long productCount) {
+        this.productCount = productCount;
+    }
+    
+    public Long getVersionSum() {
+        return versionSum;
+    }
+    
+    public void setVersionSum(Long versionSum) {
+        this.versionSum = versionSum;
+    }
+    
+    public Long getMaxId() {
+        return maxId;
+    }
+    
+    public void setMaxId(Long maxId) {
+        this.maxId = maxId;
+    }
+}
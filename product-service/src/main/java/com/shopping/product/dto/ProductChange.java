@@ -0,0 +1,54 @@
+package com.shopping.product.dto;
+
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+
+import java.time.LocalDateTime;
+
+public class ProductChange {
+    private Long seq;
+    private Long productId;
+    private ChangeType changeType;
+    private LocalDateTime changedAt;
+    
+    public ProductChange() {
+    }
+    
+    public ProductChange(Long seq, Long productId, ChangeType changeType, LocalDateTime changedAt) {
+        this.seq = seq;
+        this.productId = productId;
+        this.changeType = changeType;
+        this.changedAt = changedAt;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+    
+    public void setChangeType(ChangeType changeType) {
+        this.changeType = changeType;
+    }
+    
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+    
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+}
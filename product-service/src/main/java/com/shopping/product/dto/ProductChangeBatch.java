@@ -0,0 +1,55 @@
+package com.shopping.product.dto;
+
+import java.util.List;
+
+// seq is where the next read should continue from. reset means the changes the client asked for
+// are no longer known (the feed restarted or they fell out of its window), so it has to drop
+// everything it cached and continue from seq
+public class ProductChangeBatch {
+    private String epoch;
+    private Long seq;
+    private boolean reset;
+    private List<ProductChange> changes;
+    
+    public ProductChangeBatch() {
+    }
+    
+    public ProductChangeBatch(String epoch, Long seq, boolean reset, List<ProductChange> changes) {
+        this.epoch = epoch;
+        this.seq = seq;
+        this.reset = reset;
+        this.changes = changes;
+    }
+    
+    public String getEpoch() {
+        return epoch;
+    }
+    
+    public void setEpoch(String epoch) {
+        this.epoch = epoch;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public boolean isReset() {
+        return reset;
+    }
+    
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+    
+    public List<ProductChange> getChanges() {
+        return changes;
+    }
+    
+    public void setChanges(List<ProductChange> changes) {
+        this.changes = changes;
+    }
+}
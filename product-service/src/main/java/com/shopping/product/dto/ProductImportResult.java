@@ -0,0 +1,66 @@
+package com.shopping.product.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportResult {
+    private int imported;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+    
+    public ProductImportResult() {
+    }
+    
+    public int getImported() {
+        return imported;
+    }
+    
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+    
+    public List<RowError> getErrors() {
+        return errors;
+    }
+    
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+    
+    public static class RowError {
+        private long row;
+        private String message;
+        
+        public RowError() {
+        }
+        
+        public RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+        
+        public long getRow() {
+            return row;
+        }
+        
+        public void setRow(long row) {
+            this.row = row;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.shopping.product.dto;
+
+import com.shopping.product.entity.Product;
+
+import java.util.List;
+
+public class ProductPage {
+    private List<Product> items;
+    private Long nextAfterId;
+    
+    public ProductPage() {
+    }
+    
+    public ProductPage(List<Product> items, Long nextAfterId) {
+        this.items = items;
+        this.nextAfterId = nextAfterId;
+    }
+    
+    public List<Product> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Product> items) {
+        this.items = items;
+    }
+    
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
+    
+    public void setNextAfterId(Long nextAfterId) {
+        this.nextAfterId = nextAfterId;
+    }
+}
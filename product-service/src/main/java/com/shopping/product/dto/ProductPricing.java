@@ -0,0 +1,19 @@
+package com.shopping.product.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.math.BigDecimal;
+
+// Closed projection: Spring Data selects only these columns. What other services need to show and
+// price a product; version is the products row version and only moves when the row is written
+@JsonPropertyOrder({"id", "name", "price", "version"})
+public interface ProductPricing {
+    
+    Long getId();
+    
+    String getName();
+    
+    BigDecimal getPrice();
+    
+    Long getVersion();
+}
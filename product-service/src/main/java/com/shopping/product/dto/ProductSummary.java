@@ -0,0 +1,76 @@
+package com.shopping.product.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+
+// A product without its description, for list views
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private Integer stock;
+    private Long version;
+    @JsonIgnore
+    private Integer stockBuckets;
+    
+    public ProductSummary() {
+    }
+    
+    public ProductSummary(Long id, String name, BigDecimal price, Integer stock, Long version, Integer stockBuckets) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stock = stock;
+        this.version = version;
+        this.stockBuckets = stockBuckets;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public BigDecimal getPrice() {
+        return price;
+    }
+    
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public Integer getStockBuckets() {
+        return stockBuckets;
+    }
+    
+    public void setStockBuckets(Integer stockBuckets) {
+        this.stockBuckets = stockBuckets;
+    }
+}
@@ -0,0 +1,32 @@
+package com.shopping.product.dto;
+
+import java.util.List;
+
+public class ProductSummaryPage {
+    private List<ProductSummary> items;
+    private Long nextAfterId;
+    
+    public ProductSummaryPage() {
+    }
+    
+    public ProductSummaryPage(List<ProductSummary> items, Long nextAfterId) {
+        this.items = items;
+        this.nextAfterId = nextAfterId;
+    }
+    
+    public List<ProductSummary> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<ProductSummary> items) {
+        this.items = items;
+    }
+    
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
+    
+    public void setNextAfterId(Long nextAfterId) {
+        this.nextAfterId = nextAfterId;
+    }
+}
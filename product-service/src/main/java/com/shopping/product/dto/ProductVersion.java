@@ -0,0 +1,30 @@
+package com.shopping.product.dto;
+
+public class ProductVersion {
+    private Long id;
+    private Long version;
+    
+    public ProductVersion() {
+    }
+    
+    public ProductVersion(Long id, Long version) {
+        this.id = id;
+        this.version = version;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
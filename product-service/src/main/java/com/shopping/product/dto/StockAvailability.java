@@ -0,0 +1,50 @@
+package com.shopping.product.dto;
+
+public class StockAvailability {
+    private Long productId;
+    private Integer requested;
+    private Integer stock;
+    private boolean available;
+    
+    public StockAvailability() {
+    }
+    
+    public StockAvailability(Long productId, Integer requested, Integer stock, boolean available) {
+        this.productId = productId;
+        this.requested = requested;
+        this.stock = stock;
+        this.available = available;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getRequested() {
+        return requested;
+    }
+    
+    public void setRequested(Integer requested) {
+        this.requested = requested;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public boolean isAvailable() {
+        return available;
+    }
+    
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
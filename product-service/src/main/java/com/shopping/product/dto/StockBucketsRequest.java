@@ -0,0 +1,28 @@
+package com.shopping.product.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class StockBucketsRequest {
+    
+    @NotNull(message = "Bucket count is required")
+    @Min(value = 1, message = "Bucket count must be at least 1")
+    @Max(value = 64, message = "Bucket count cannot exceed 64")
+    private Integer buckets;
+    
+    public StockBucketsRequest() {
+    }
+    
+    public StockBucketsRequest(Integer buckets) {
+        this.buckets = buckets;
+    }
+    
+    public Integer getBuckets() {
+        return buckets;
+    }
+    
+    public void setBuckets(Integer buckets) {
+        this.buckets = buckets;
+    }
+}
@@ -0,0 +1,42 @@
+package com.shopping.product.dto;
+
+import java.util.List;
+
+public class StockBucketsResponse {
+    private Long productId;
+    private Integer stock;
+    private List<Integer> buckets;
+    
+    public StockBucketsResponse() {
+    }
+    
+    public StockBucketsResponse(Long productId, Integer stock, List<Integer> buckets) {
+        this.productId = productId;
+        this.stock = stock;
+        this.buckets = buckets;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public List<Integer> getBuckets() {
+        return buckets;
+    }
+    
+    public void setBuckets(List<Integer> buckets) {
+        this.buckets = buckets;
+    }
+}
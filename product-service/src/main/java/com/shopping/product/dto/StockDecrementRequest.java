@@ -0,0 +1,26 @@
+package com.shopping.product.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class StockDecrementRequest {
+    
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private Integer quantity;
+    
+    public StockDecrementRequest() {
+    }
+    
+    public StockDecrementRequest(Integer quantity) {
+        this.quantity = quantity;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,42 @@
+package com.shopping.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+public class StockHoldRequest {
+    
+    @NotEmpty(message = "Hold must contain at least one item")
+    @Valid
+    private List<StockReservationItem> items;
+    
+    // Optional; product.holds.default-ttl applies when absent
+    @Positive(message = "TTL must be positive")
+    private Integer ttlSeconds;
+    
+    public StockHoldRequest() {
+    }
+    
+    public StockHoldRequest(List<StockReservationItem> items, Integer ttlSeconds) {
+        this.items = items;
+        this.ttlSeconds = ttlSeconds;
+    }
+    
+    public List<StockReservationItem> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<StockReservationItem> items) {
+        this.items = items;
+    }
+    
+    public Integer getTtlSeconds() {
+        return ttlSeconds;
+    }
+    
+    public void setTtlSeconds(Integer ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
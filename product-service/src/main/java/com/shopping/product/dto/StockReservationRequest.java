@@ -0,0 +1,28 @@
+package com.shopping.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class StockReservationRequest {
+    
+    @NotEmpty(message = "Reservation must contain at least one item")
+    @Valid
+    private List<StockReservationItem> items;
+    
+    public StockReservationRequest() {
+    }
+    
+    public StockReservationRequest(List<StockReservationItem> items) {
+        this.items = items;
+    }
+    
+    public List<StockReservationItem> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<StockReservationItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,30 @@
+package com.shopping.product.dto;
+
+public class StockResponse {
+    private Long productId;
+    private Integer stock;
+    
+    public StockResponse() {
+    }
+    
+    public StockResponse(Long productId, Integer stock) {
+        this.productId = productId;
+        this.stock = stock;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+}
@@ -0,0 +1,8 @@
+package com.shopping.product.entity;
+
+public enum HoldStatus {
+    ACTIVE,
+    CONFIRMED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,41 @@
+package com.shopping.product.entity;
+
+import jakarta.persistence.*;
+
+// Highest inventory journal sequence number whose stock delta has been applied to products
+@Entity
+@Table(name = "inventory_checkpoint")
+public class InventoryCheckpoint {
+    
+    public static final Integer SINGLETON_ID = 1;
+    
+    @Id
+    private Integer id;
+    
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+    
+    public InventoryCheckpoint() {
+    }
+    
+    public InventoryCheckpoint(Long lastSeq) {
+        this.id = SINGLETON_ID;
+        this.lastSeq = lastSeq;
+    }
+    
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public Long getLastSeq() {
+        return lastSeq;
+    }
+    
+    public void setLastSeq(Long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+}
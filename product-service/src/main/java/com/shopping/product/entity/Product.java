@@ -1,9 +1,11 @@
 package com.shopping.product.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import java.math.BigDecimal;
 import java.util.Objects;
 
@@ -11,14 +13,18 @@ import java.util.Objects;
 @Table(name = "products")
 public class Product {
     
+    // Pooled sequence (a table on MySQL) hands out ids in blocks, which lets Hibernate batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Product name is required")
-    @Column(nullable = false)
+    @Size(max = 255, message = "Product name must be at most 255 characters")
+    @Column(nullable = false, length = 255)
     private String name;
     
+    @Size(max = 1000, message = "Description must be at most 1000 characters")
     @Column(length = 1000)
     private String description;
     
@@ -32,6 +38,17 @@ public class Product {
     @Column(nullable = false)
     private Integer stock;
     
+    // Optimistic lock: Hibernate bumps it on every entity update and rejects writes based on a stale
+    // read. Bulk JPQL updates bump it themselves. Product ETags and the catalog ETag derive from it
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
+    // Number of product_stock_bucket rows holding this product's stock; 0 keeps it in this row
+    @JsonIgnore
+    @Column(name = "stock_buckets", nullable = false)
+    private Integer stockBuckets = 0;
+    
     public Product() {
     }
     
@@ -82,6 +99,22 @@ public class Product {
         this.stock = stock;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public Integer getStockBuckets() {
+        return stockBuckets;
+    }
+    
+    public void setStockBuckets(Integer stockBuckets) {
+        this.stockBuckets = stockBuckets;
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -103,6 +136,7 @@ public class Product {
                 ", description='" + description + '\'' +
                 ", price=" + price +
                 ", stock=" + stock +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,75 @@
+package com.shopping.product.entity;
+
+import jakarta.persistence.*;
+
+// One share of a split product's stock; decrements on different buckets lock different rows
+@Entity
+@Table(name = "product_stock_bucket",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"product_id", "bucket"}))
+public class ProductStockBucket {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(nullable = false)
+    private Integer bucket;
+    
+    @Column(nullable = false)
+    private Integer stock;
+    
+    @Column(nullable = false)
+    private Long version = 0L;
+    
+    public ProductStockBucket() {
+    }
+    
+    public ProductStockBucket(Long productId, Integer bucket, Integer stock) {
+        this.productId = productId;
+        this.bucket = bucket;
+        this.stock = stock;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getBucket() {
+        return bucket;
+    }
+    
+    public void setBucket(Integer bucket) {
+        this.bucket = bucket;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+    
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,86 @@
+package com.shopping.product.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Stock taken out of sale for a checkout until the hold is confirmed, released or expires. The
+// (status, expires_at) index lets the sweeper find due holds with a range scan
+@Entity
+@Table(name = "stock_holds",
+       indexes = @Index(name = "idx_stock_holds_status_expires_at", columnList = "status, expires_at"))
+public class StockHold {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private HoldStatus status;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    // Holds are read a batch at a time by the sweeper, so their items are loaded in batches too
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "stock_hold_items", joinColumns = @JoinColumn(name = "hold_id"))
+    @BatchSize(size = 100)
+    private List<StockHoldItem> items = new ArrayList<>();
+    
+    public StockHold() {
+    }
+    
+    public StockHold(LocalDateTime createdAt, LocalDateTime expiresAt, List<StockHoldItem> items) {
+        this.status = HoldStatus.ACTIVE;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.items = items;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public HoldStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(HoldStatus status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public List<StockHoldItem> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<StockHoldItem> items) {
+        this.items = items;
+    }
+}
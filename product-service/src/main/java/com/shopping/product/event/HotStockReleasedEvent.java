@@ -0,0 +1,30 @@
+package com.shopping.product.event;
+
+// Published when stock of a hot product is handed back as part of a database transaction, so it
+// only returns to sale once that transaction commits
+public class HotStockReleasedEvent {
+    
+    private final Long productId;
+    private final Integer quantity;
+    
+    public HotStockReleasedEvent(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    @Override
+    public String toString() {
+        return "HotStockReleasedEvent{" +
+                "productId=" + productId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package com.shopping.product.event;
+
+// Published when stock of a hot product is taken in memory as part of a database transaction,
+// so the reservation can be handed back if that transaction rolls back
+public class HotStockReservedEvent {
+    
+    private final Long productId;
+    private final Integer quantity;
+    
+    public HotStockReservedEvent(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    @Override
+    public String toString() {
+        return "HotStockReservedEvent{" +
+                "productId=" + productId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
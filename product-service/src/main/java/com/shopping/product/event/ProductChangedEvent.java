@@ -0,0 +1,46 @@
+package com.shopping.product.event;
+
+import com.shopping.product.entity.Product;
+
+public class ProductChangedEvent {
+    
+    public enum ChangeType {
+        CREATED,
+        STOCK_CHANGED
+    }
+    
+    private final Long productId;
+    private final ChangeType changeType;
+    private final Product product;
+    
+    public ProductChangedEvent(Long productId, ChangeType changeType) {
+        this(productId, changeType, null);
+    }
+    
+    public ProductChangedEvent(Long productId, ChangeType changeType, Product product) {
+        this.productId = productId;
+        this.changeType = changeType;
+        this.product = product;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+    
+    // State of the product as written, when the publisher had it at hand; may be null
+    public Product getProduct() {
+        return product;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductChangedEvent{" +
+                "productId=" + productId +
+                ", changeType=" + changeType +
+                '}';
+    }
+}
@@ -0,0 +1,147 @@
+package com.shopping.product.feed;
+
+import com.shopping.product.dto.ProductChange;
+import com.shopping.product.dto.ProductChangeBatch;
+import com.shopping.product.event.ProductChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Numbers committed product changes in commit order and keeps the latest ones in a ring buffer, so
+// clients holding product data can catch up on exactly what changed since the last seq they saw.
+// The log lives in memory: sequence numbers are only meaningful within one epoch, which is new on
+// every start, and a client behind by more than the buffer holds is told to reset. Hot products
+// appear when the engine flushes them, which is when their stock changes for readers.
+@Component
+public class ProductChangeFeed {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeFeed.class);
+    
+    private final String epoch = UUID.randomUUID().toString();
+    private final ProductChange[] ring;
+    private final Duration heartbeatInterval;
+    private final Set<ProductChangeListener> listeners = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    
+    // Guarded by this
+    private long latestSeq;
+    
+    private ScheduledExecutorService dispatcher;
+    
+    public ProductChangeFeed(@Value("${product.feed.capacity:10000}") int capacity,
+                             @Value("${product.feed.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.ring = new ProductChange[capacity];
+        this.heartbeatInterval = heartbeatInterval;
+    }
+    
+    @PostConstruct
+    public void start() {
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = heartbeatInterval.toMillis();
+        dispatcher.scheduleWithFixedDelay(() -> notifyListeners(ProductChangeListener::heartbeat),
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+    }
+    
+    public String getEpoch() {
+        return epoch;
+    }
+    
+    public synchronized long getLatestSeq() {
+        return latestSeq;
+    }
+    
+    // Recorded after commit, and after the caches and indexes have dropped the old state, so a client
+    // that sees a change and reads the product gets the new state
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (this) {
+            long seq = ++latestSeq;
+            ring[(int) (seq % ring.length)] = new ProductChange(seq, event.getProductId(),
+                    event.getChangeType(), LocalDateTime.now());
+        }
+        // Listeners read everything new when they run, so a burst of changes needs one dispatch
+        if (dispatchPending.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                dispatchPending.set(false);
+                notifyListeners(ProductChangeListener::changesAvailable);
+            });
+        }
+    }
+    
+    // Changes after since, at most limit of them. No since returns none and the current position
+    // to start from; an epoch other than this one, or a since outside the buffer, asks for a reset
+    public synchronized ProductChangeBatch read(String clientEpoch, Long since, int limit) {
+        if (since == null) {
+            return new ProductChangeBatch(epoch, latestSeq, false, List.of());
+        }
+        boolean otherEpoch = clientEpoch != null && !clientEpoch.equals(epoch);
+        if (otherEpoch || since < 0 || since > latestSeq || since < latestSeq - ring.length) {
+            return new ProductChangeBatch(epoch, latestSeq, true, List.of());
+        }
+        
+        long through = Math.min(latestSeq, since + limit);
+        List<ProductChange> changes = new ArrayList<>((int) (through - since));
+        for (long seq = since + 1; seq <= through; seq++) {
+            changes.add(ring[(int) (seq % ring.length)]);
+        }
+        return new ProductChangeBatch(epoch, through, false, changes);
+    }
+    
+    // The listener is called once straight away, so changes made while it was being set up are not missed
+    public void subscribe(ProductChangeListener listener) {
+        listeners.add(listener);
+        dispatcher.execute(() -> {
+            if (listeners.contains(listener)) {
+                notifyListener(listener, ProductChangeListener::changesAvailable);
+            }
+        });
+    }
+    
+    public void unsubscribe(ProductChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void notifyListeners(Consumer<ProductChangeListener> call) {
+        for (ProductChangeListener listener : listeners) {
+            notifyListener(listener, call);
+        }
+    }
+    
+    private void notifyListener(ProductChangeListener listener, Consumer<ProductChangeListener> call) {
+        try {
+            call.accept(listener);
+        } catch (RuntimeException e) {
+            logger.warn("Dropping product change listener after it failed", e);
+            listeners.remove(listener);
+        }
+    }
+}
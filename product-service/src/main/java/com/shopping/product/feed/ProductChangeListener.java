@@ -0,0 +1,12 @@
+package com.shopping.product.feed;
+
+// Called on the feed's dispatch thread, one call at a time, so implementations need no locking
+// of their own and should not block for long
+public interface ProductChangeListener {
+    
+    // New changes may be readable; also called once right after subscribing
+    void changesAvailable();
+    
+    default void heartbeat() {
+    }
+}
@@ -0,0 +1,345 @@
+package com.shopping.product.inventory;
+
+import com.shopping.product.datasource.ReplicaRouting;
+import com.shopping.product.entity.InventoryCheckpoint;
+import com.shopping.product.event.HotStockReleasedEvent;
+import com.shopping.product.event.HotStockReservedEvent;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.repository.InventoryCheckpointRepository;
+import com.shopping.product.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Owns the stock of products flagged as hot. Reservations are decided against striped in-memory
+// counters and acknowledged once journaled; the net change per product is written to the products
+// table in one transaction per flush, together with the journal position it covers. On start the
+// journal is replayed past the last checkpoint before the counters are loaded from the table.
+// Every journaled change also moves the product's version by one, and a flush moves the row
+// version by the number of changes it writes, so the row catches up with what readers were shown.
+// Stock of a hot product must only change through this engine, so a single product-service
+// instance may run with hot products configured. Depends on the EntityManagerFactory so the final
+// flush on shutdown runs before JPA is closed.
+@Component
+@DependsOn("entityManagerFactory")
+public class HotStockEngine {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HotStockEngine.class);
+    
+    private final ProductRepository productRepository;
+    private final InventoryCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final List<Long> hotProductIds;
+    private final int stripes;
+    private final Duration flushInterval;
+    private final Path journalDirectory;
+    private final DataSize journalSegmentSize;
+    
+    // Journaled deltas not yet written to the products table; guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private Map<Long, Integer> pendingDeltas = new HashMap<>();
+    private Map<Long, Integer> pendingChanges = new HashMap<>();
+    private long pendingThroughSeq;
+    
+    private long checkpointSeq;
+    private volatile Map<Long, StripedStockCounter> counters = Map.of();
+    // Version readers are shown, and the version of the row as last written by a flush
+    private volatile Map<Long, AtomicLong> versions = Map.of();
+    private volatile Map<Long, AtomicLong> rowVersions = Map.of();
+    private InventoryJournal journal;
+    private ScheduledExecutorService flusher;
+    
+    public HotStockEngine(ProductRepository productRepository,
+                          InventoryCheckpointRepository checkpointRepository,
+                          PlatformTransactionManager transactionManager,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${product.inventory.hot-products:}") List<Long> hotProductIds,
+                          @Value("${product.inventory.stripes:16}") int stripes,
+                          @Value("${product.inventory.flush-interval:200ms}") Duration flushInterval,
+                          @Value("${product.inventory.journal-dir:data/inventory}") Path journalDirectory,
+                          @Value("${product.inventory.journal-segment-size:16MB}") DataSize journalSegmentSize) {
+        this.productRepository = productRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.hotProductIds = hotProductIds;
+        this.stripes = stripes;
+        this.flushInterval = flushInterval;
+        this.journalDirectory = journalDirectory;
+        this.journalSegmentSize = journalSegmentSize;
+    }
+    
+    // Checkpoint and stock are read from the primary: a replica may not have the replayed deltas yet
+    @PostConstruct
+    public void start() throws IOException {
+        Map<Long, StripedStockCounter> loaded = new HashMap<>();
+        Map<Long, AtomicLong> loadedVersions = new HashMap<>();
+        Map<Long, AtomicLong> loadedRowVersions = new HashMap<>();
+        try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+            // Replay even when no product is flagged any more, so deltas journaled before a crash are not lost
+            recover();
+            if (hotProductIds.isEmpty()) {
+                return;
+            }
+            
+            for (Long productId : hotProductIds) {
+                Integer stock = productRepository.findStockById(productId);
+                if (stock == null) {
+                    logger.warn("Hot product {} does not exist and is ignored", productId);
+                    continue;
+                }
+                if (productRepository.findStockBucketsById(productId) > 0) {
+                    logger.warn("Hot product {} has its stock split into buckets and is ignored", productId);
+                    continue;
+                }
+                loaded.put(productId, new StripedStockCounter(stripes, stock));
+                long version = productRepository.findVersionById(productId);
+                loadedVersions.put(productId, new AtomicLong(version));
+                loadedRowVersions.put(productId, new AtomicLong(version));
+            }
+        }
+        
+        pendingThroughSeq = checkpointSeq;
+        journal = new InventoryJournal(journalDirectory, checkpointSeq, journalSegmentSize.toBytes(), this::onDurable);
+        versions = Map.copyOf(loadedVersions);
+        rowVersions = Map.copyOf(loadedRowVersions);
+        counters = Map.copyOf(loaded);
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Hot inventory engine managing products {}", counters.keySet());
+    }
+    
+    public boolean isHot(Long productId) {
+        return counters.containsKey(productId);
+    }
+    
+    // In-memory stock of a hot product, or null for products the engine does not manage
+    public Integer getStock(Long productId) {
+        StripedStockCounter counter = counters.get(productId);
+        return counter != null ? (int) counter.total() : null;
+    }
+    
+    // Version of a hot product including changes the row has not caught up with, or null for
+    // products the engine does not manage
+    public Long getVersion(Long productId) {
+        AtomicLong version = versions.get(productId);
+        return version != null ? version.get() : null;
+    }
+    
+    // How far the versions of all hot products are ahead of their rows
+    public long unflushedVersions() {
+        long unflushed = 0;
+        for (Map.Entry<Long, AtomicLong> version : versions.entrySet()) {
+            unflushed += version.getValue().get() - rowVersions.get(version.getKey()).get();
+        }
+        return unflushed;
+    }
+    
+    public Set<Long> getHotProductIds() {
+        return counters.keySet();
+    }
+    
+    // Returns the remaining stock once the decrement is journaled
+    public int reserve(Long productId, int quantity) {
+        StripedStockCounter counter = counter(productId);
+        if (!counter.tryDecrement(quantity)) {
+            throw new IllegalStateException("Insufficient stock for product: " + productId);
+        }
+        try {
+            append(productId, -quantity);
+        } catch (RuntimeException e) {
+            counter.add(quantity);
+            throw e;
+        }
+        return (int) counter.total();
+    }
+    
+    // Journaled before it becomes visible, so stock that was never durably returned cannot be sold
+    public void release(Long productId, int quantity) {
+        StripedStockCounter counter = counter(productId);
+        append(productId, quantity);
+        counter.add(quantity);
+    }
+    
+    public void setStock(Long productId, int stock) {
+        counter(productId).replace(stock, delta -> {
+            if (delta != 0) {
+                append(productId, (int) delta);
+            }
+        });
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onReservationRolledBack(HotStockReservedEvent event) {
+        try {
+            release(event.getProductId(), event.getQuantity());
+        } catch (RuntimeException e) {
+            logger.error("Could not return {} units of hot product {} after rollback",
+                    event.getQuantity(), event.getProductId(), e);
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onReleaseCommitted(HotStockReleasedEvent event) {
+        try {
+            release(event.getProductId(), event.getQuantity());
+        } catch (RuntimeException e) {
+            logger.error("Could not return {} units of hot product {} after commit",
+                    event.getQuantity(), event.getProductId(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        journal.close();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Final inventory flush failed; the journal is replayed on next start", e);
+        }
+    }
+    
+    void flush() {
+        Map<Long, Integer> deltas;
+        Map<Long, Integer> changes;
+        long throughSeq;
+        synchronized (pendingLock) {
+            if (pendingThroughSeq == checkpointSeq) {
+                return;
+            }
+            deltas = pendingDeltas;
+            changes = pendingChanges;
+            throughSeq = pendingThroughSeq;
+            pendingDeltas = new HashMap<>();
+            pendingChanges = new HashMap<>();
+        }
+        
+        try {
+            apply(deltas, changes, throughSeq);
+        } catch (RuntimeException e) {
+            // Put the deltas back; the next flush writes them with a later checkpoint
+            synchronized (pendingLock) {
+                deltas.forEach((productId, delta) -> pendingDeltas.merge(productId, delta, Integer::sum));
+                changes.forEach((productId, count) -> pendingChanges.merge(productId, count, Integer::sum));
+            }
+            throw e;
+        }
+        
+        try {
+            journal.deleteThrough(throughSeq);
+        } catch (IOException e) {
+            logger.warn("Could not delete checkpointed inventory journal segments", e);
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Inventory flush failed; retrying on the next interval", e);
+        }
+    }
+    
+    private void recover() throws IOException {
+        checkpointSeq = checkpointRepository.findById(InventoryCheckpoint.SINGLETON_ID)
+                .map(InventoryCheckpoint::getLastSeq)
+                .orElse(0L);
+        
+        List<JournalRecord> records = InventoryJournal.readAfter(journalDirectory, checkpointSeq);
+        if (!records.isEmpty()) {
+            Map<Long, Integer> deltas = new HashMap<>();
+            Map<Long, Integer> changes = new HashMap<>();
+            for (JournalRecord record : records) {
+                deltas.merge(record.getProductId(), record.getDelta(), Integer::sum);
+                changes.merge(record.getProductId(), 1, Integer::sum);
+            }
+            apply(deltas, changes, records.get(records.size() - 1).getSeq());
+            logger.info("Replayed {} inventory journal records through seq {}", records.size(), checkpointSeq);
+        }
+        InventoryJournal.deleteAll(journalDirectory);
+    }
+    
+    // Writes the net deltas, a version step per change, and the journal position they cover in one
+    // transaction; a product whose changes cancel out still moves its version
+    private void apply(Map<Long, Integer> deltas, Map<Long, Integer> changes, long throughSeq) {
+        transactionTemplate.executeWithoutResult(status -> {
+            changes.forEach((productId, count) -> {
+                productRepository.adjustStock(productId, deltas.getOrDefault(productId, 0), count.longValue());
+                eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+            });
+            checkpointRepository.save(new InventoryCheckpoint(throughSeq));
+        });
+        checkpointSeq = throughSeq;
+        changes.forEach((productId, count) -> {
+            AtomicLong rowVersion = rowVersions.get(productId);
+            if (rowVersion != null) {
+                rowVersion.addAndGet(count);
+            }
+        });
+    }
+    
+    // The version moves first so a flush of this record never takes the row past it
+    private void append(Long productId, int delta) {
+        AtomicLong version = versions.get(productId);
+        version.incrementAndGet();
+        try {
+            journal.append(productId, delta);
+        } catch (RuntimeException e) {
+            version.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    private void onDurable(List<JournalRecord> records) {
+        synchronized (pendingLock) {
+            for (JournalRecord record : records) {
+                pendingDeltas.merge(record.getProductId(), record.getDelta(), Integer::sum);
+                pendingChanges.merge(record.getProductId(), 1, Integer::sum);
+            }
+            pendingThroughSeq = records.get(records.size() - 1).getSeq();
+        }
+    }
+    
+    private StripedStockCounter counter(Long productId) {
+        StripedStockCounter counter = counters.get(productId);
+        if (counter == null) {
+            throw new IllegalArgumentException("Product is not managed by the hot inventory engine: " + productId);
+        }
+        return counter;
+    }
+}
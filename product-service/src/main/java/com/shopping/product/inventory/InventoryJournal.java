@@ -0,0 +1,232 @@
+package com.shopping.product.inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of stock deltas with group commit: appenders queue a record and wait while a
+// single writer thread writes everything queued so far and forces it to disk with one fsync.
+// Segments are named after their first sequence number; a segment is deleted once every record
+// in it has been checkpointed to the database.
+class InventoryJournal implements AutoCloseable {
+    
+    // seq, productId, delta, CRC32 of the first 20 bytes
+    static final int RECORD_BYTES = 24;
+    
+    private static final String SEGMENT_PREFIX = "inventory-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    
+    private final Path directory;
+    private final long segmentBytes;
+    private final Consumer<List<JournalRecord>> onDurable;
+    private final Object lock = new Object();
+    private final Thread writer;
+    
+    // Guarded by lock
+    private long lastSeq;
+    private Batch pending = new Batch();
+    private boolean closed;
+    private IOException failure;
+    
+    // Only touched by the writer thread
+    private FileChannel segment;
+    private long segmentSize;
+    
+    InventoryJournal(Path directory, long lastSeq, long segmentBytes,
+                     Consumer<List<JournalRecord>> onDurable) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.onDurable = onDurable;
+        this.lastSeq = lastSeq;
+        Files.createDirectories(directory);
+        openSegment(lastSeq + 1);
+        this.writer = new Thread(this::writeLoop, "inventory-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    // Returns once the record is on disk and has been handed to onDurable
+    void append(long productId, int delta) {
+        Batch batch;
+        synchronized (lock) {
+            if (closed || failure != null) {
+                throw new UncheckedIOException(failure != null ? failure : new IOException("Inventory journal is closed"));
+            }
+            batch = pending;
+            batch.records.add(new JournalRecord(++lastSeq, productId, delta));
+            lock.notifyAll();
+        }
+        try {
+            batch.done.join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException((IOException) e.getCause());
+        }
+    }
+    
+    // Deletes every closed segment whose records all have a sequence number up to checkpointSeq
+    void deleteThrough(long checkpointSeq) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) - 1 <= checkpointSeq) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Records after afterSeq from every segment in the directory, in sequence order; a segment
+    // is read up to its first torn or corrupt record
+    static List<JournalRecord> readAfter(Path directory, long afterSeq) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return records;
+        }
+        CRC32 crc = new CRC32();
+        for (Path segment : segments(directory)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (buffer.remaining() >= RECORD_BYTES) {
+                int start = buffer.position();
+                long seq = buffer.getLong();
+                long productId = buffer.getLong();
+                int delta = buffer.getInt();
+                crc.reset();
+                crc.update(buffer.array(), start, RECORD_BYTES - Integer.BYTES);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break;
+                }
+                if (seq > afterSeq) {
+                    records.add(new JournalRecord(seq, productId, delta));
+                }
+            }
+        }
+        return records;
+    }
+    
+    static void deleteAll(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            for (Path segment : segments(directory)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+    
+    private void writeLoop() {
+        while (true) {
+            Batch batch;
+            IOException failed;
+            synchronized (lock) {
+                while (pending.records.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending.records.isEmpty()) {
+                    break;
+                }
+                batch = pending;
+                pending = new Batch();
+                failed = failure;
+            }
+            
+            if (failed == null) {
+                try {
+                    write(batch.records);
+                } catch (IOException e) {
+                    // Nothing after a failed write can be trusted on replay, so the journal stops taking records
+                    synchronized (lock) {
+                        failure = e;
+                    }
+                    failed = e;
+                }
+            }
+            if (failed != null) {
+                batch.done.completeExceptionally(failed);
+                continue;
+            }
+            onDurable.accept(batch.records);
+            batch.done.complete(null);
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            // Everything acknowledged has already been forced
+        }
+    }
+    
+    private void write(List<JournalRecord> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_BYTES);
+        CRC32 crc = new CRC32();
+        for (JournalRecord record : records) {
+            int start = buffer.position();
+            buffer.putLong(record.getSeq());
+            buffer.putLong(record.getProductId());
+            buffer.putInt(record.getDelta());
+            crc.reset();
+            crc.update(buffer.array(), start, RECORD_BYTES - Integer.BYTES);
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        
+        segmentSize += (long) records.size() * RECORD_BYTES;
+        if (segmentSize >= segmentBytes) {
+            segment.close();
+            openSegment(records.get(records.size() - 1).getSeq() + 1);
+        }
+    }
+    
+    private void openSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+    
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private static class Batch {
+        private final List<JournalRecord> records = new ArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,26 @@
+package com.shopping.product.inventory;
+
+class JournalRecord {
+    
+    private final long seq;
+    private final long productId;
+    private final int delta;
+    
+    JournalRecord(long seq, long productId, int delta) {
+        this.seq = seq;
+        this.productId = productId;
+        this.delta = delta;
+    }
+    
+    long getSeq() {
+        return seq;
+    }
+    
+    long getProductId() {
+        return productId;
+    }
+    
+    int getDelta() {
+        return delta;
+    }
+}
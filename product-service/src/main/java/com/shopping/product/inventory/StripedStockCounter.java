@@ -0,0 +1,108 @@
+package com.shopping.product.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+// Stock of one product split across cells, each of which can only be taken down to zero, so the
+// total can never go negative. Threads start at their own cell and CAS it without locking; the
+// lock is only taken to gather stock that is spread too thinly across cells to satisfy a request.
+class StripedStockCounter {
+    
+    // Cells sit 128 bytes apart so threads working different stripes do not share a cache line
+    private static final int PADDING = 16;
+    
+    private final int stripes;
+    private final AtomicLongArray cells;
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+    
+    StripedStockCounter(int stripes, long stock) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        distribute(stock);
+    }
+    
+    long total() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PADDING);
+        }
+        return total;
+    }
+    
+    boolean tryDecrement(int quantity) {
+        int start = homeStripe();
+        for (int i = 0; i < stripes; i++) {
+            if (tryTake((start + i) % stripes, quantity)) {
+                return true;
+            }
+        }
+        
+        rebalanceLock.lock();
+        try {
+            long available = drain();
+            if (available < quantity) {
+                distribute(available);
+                return false;
+            }
+            distribute(available - quantity);
+            return true;
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+    
+    void add(int quantity) {
+        cells.addAndGet(homeStripe() * PADDING, quantity);
+    }
+    
+    // Replaces the total with newValue; the delta is handed to commit while all stock is gathered
+    // under the lock, and the old total is restored if commit throws
+    void replace(long newValue, LongConsumer commit) {
+        rebalanceLock.lock();
+        try {
+            long previous = drain();
+            try {
+                commit.accept(newValue - previous);
+            } catch (RuntimeException e) {
+                distribute(previous);
+                throw e;
+            }
+            distribute(newValue);
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+    
+    private boolean tryTake(int stripe, int quantity) {
+        int index = stripe * PADDING;
+        long current = cells.get(index);
+        while (current >= quantity) {
+            if (cells.compareAndSet(index, current, current - quantity)) {
+                return true;
+            }
+            current = cells.get(index);
+        }
+        return false;
+    }
+    
+    private long drain() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.getAndSet(i * PADDING, 0);
+        }
+        return total;
+    }
+    
+    private void distribute(long stock) {
+        long share = stock / stripes;
+        long remainder = stock % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.addAndGet(i * PADDING, share + (i < remainder ? 1 : 0));
+        }
+    }
+    
+    private int homeStripe() {
+        return Math.floorMod(Long.hashCode(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L), stripes);
+    }
+}
@@ -1,9 +1,102 @@
 package com.shopping.product.repository;
 
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.dto.ProductPricing;
+import com.shopping.product.dto.ProductSummary;
+import com.shopping.product.dto.ProductVersion;
 import com.shopping.product.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    
+    // Keyset pagination: seeks on the primary key instead of skipping OFFSET rows
+    @Query("SELECT p FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Product> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Same seek as findPageAfter, but without reading or materializing descriptions
+    @Query("SELECT new com.shopping.product.dto.ProductSummary(p.id, p.name, p.price, p.stock, p.version, p.stockBuckets) " +
+           "FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<ProductSummary> findSummaryPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT new com.shopping.product.dto.ProductSummary(p.id, p.name, p.price, p.stock, p.version, p.stockBuckets) " +
+           "FROM Product p WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id AS id, p.name AS name, p.price AS price, p.version AS version FROM Product p WHERE p.id = :id")
+    Optional<ProductPricing> findPricingById(@Param("id") Long id);
+    
+    @Query("SELECT p.id AS id, p.name AS name, p.price AS price, p.version AS version FROM Product p WHERE p.id IN :ids")
+    List<ProductPricing> findPricingByIds(@Param("ids") Collection<Long> ids);
+    
+    // Reads through a JDBC cursor in fetch-size chunks (MySQL needs useCursorFetch=true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAll();
+    
+    // Row versions only, for checking which products changed since a catalog snapshot was taken
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.shopping.product.dto.ProductVersion(p.id, p.version) FROM Product p")
+    Stream<ProductVersion> streamVersions();
+    
+    // Guarded decrement: only succeeds when enough stock is left, so no read-then-write window
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // Applies a net stock change that was decided in memory by the hot-product inventory engine,
+    // moving the version once for every change that went into it
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :delta, p.version = p.version + :changes WHERE p.id = :id")
+    int adjustStock(@Param("id") Long id, @Param("delta") Integer delta, @Param("changes") Long changes);
+    
+    // Returns stock to a product that keeps it in its own row; matches nothing once it is split
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.stockBuckets = 0")
+    int incrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+    
+    // Compare-and-set: only applies if nothing has written the product since it was read at version
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = :stock, p.version = p.version + 1 WHERE p.id = :id AND p.version = :version")
+    int updateStock(@Param("id") Long id, @Param("version") Long version, @Param("stock") Integer stock);
+    
+    // Moves the product between row and bucket stock if it is still at the version it was read at
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = :stock, p.stockBuckets = :buckets, " +
+           "p.version = p.version + :versionIncrement WHERE p.id = :id AND p.version = :version")
+    int updateStockLayout(@Param("id") Long id,
+                          @Param("version") Long version,
+                          @Param("stock") Integer stock,
+                          @Param("buckets") Integer buckets,
+                          @Param("versionIncrement") Long versionIncrement);
+    
+    // Products are never deleted and every mutation bumps a version, so any change to the
+    // catalog raises the count or the version sum
+    @Query("SELECT new com.shopping.product.dto.CatalogVersion(COUNT(p), COALESCE(SUM(p.version), 0L), " +
+           "COALESCE(MAX(p.id), 0L)) FROM Product p")
+    CatalogVersion findCatalogVersion();
+    
+    @Query("SELECT p.stockBuckets FROM Product p WHERE p.id = :id")
+    Integer findStockBucketsById(@Param("id") Long id);
+    
+    @Query("SELECT p.stock FROM Product p WHERE p.id = :id")
+    Integer findStockById(@Param("id") Long id);
+    
+    @Query("SELECT p.version FROM Product p WHERE p.id = :id")
+    Long findVersionById(@Param("id") Long id);
 }
@@ -0,0 +1,57 @@
+package com.shopping.product.repository;
+
+import com.shopping.product.dto.BucketTotals;
+import com.shopping.product.entity.ProductStockBucket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductStockBucketRepository extends JpaRepository<ProductStockBucket, Long> {
+    
+    // Plain values rather than entities, so a later locking read in the same transaction is not
+    // answered from the persistence context
+    @Query("SELECT b.stock FROM ProductStockBucket b WHERE b.productId = :productId ORDER BY b.bucket")
+    List<Integer> findStocksByProductId(@Param("productId") Long productId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ProductStockBucket b WHERE b.productId = :productId ORDER BY b.bucket")
+    List<ProductStockBucket> findByProductIdForUpdate(@Param("productId") Long productId);
+    
+    // Guarded decrement of a single bucket, the counterpart of ProductRepository.decrementStock
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductStockBucket b SET b.stock = b.stock - :quantity, b.version = b.version + 1 " +
+           "WHERE b.productId = :productId AND b.bucket = :bucket AND b.stock >= :quantity")
+    int decrementStock(@Param("productId") Long productId,
+                       @Param("bucket") Integer bucket,
+                       @Param("quantity") Integer quantity);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductStockBucket b SET b.stock = b.stock + :quantity, b.version = b.version + 1 " +
+           "WHERE b.productId = :productId AND b.bucket = :bucket")
+    int incrementStock(@Param("productId") Long productId,
+                       @Param("bucket") Integer bucket,
+                       @Param("quantity") Integer quantity);
+    
+    @Query("SELECT new com.shopping.product.dto.BucketTotals(b.productId, SUM(b.stock), SUM(b.version)) " +
+           "FROM ProductStockBucket b WHERE b.productId IN :productIds GROUP BY b.productId")
+    List<BucketTotals> findTotalsByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT new com.shopping.product.dto.BucketTotals(b.productId, SUM(b.stock), SUM(b.version)) " +
+           "FROM ProductStockBucket b GROUP BY b.productId")
+    List<BucketTotals> findAllTotals();
+    
+    @Query("SELECT COALESCE(SUM(b.version), 0L) FROM ProductStockBucket b")
+    Long sumVersions();
+    
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM ProductStockBucket b WHERE b.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
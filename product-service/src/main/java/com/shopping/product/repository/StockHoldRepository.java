@@ -0,0 +1,35 @@
+package com.shopping.product.repository;
+
+import com.shopping.product.entity.StockHold;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM StockHold h WHERE h.id = :id")
+    Optional<StockHold> findByIdForUpdate(@Param("id") Long id);
+    
+    // Served by the (status, expires_at) index, oldest first
+    @Query("SELECT h.id FROM StockHold h WHERE h.status = com.shopping.product.entity.HoldStatus.ACTIVE " +
+           "AND h.expiresAt <= :now ORDER BY h.expiresAt")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    // The status is checked again under the lock, so a hold confirmed or released since the
+    // due ids were read is skipped
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM StockHold h WHERE h.id IN :ids " +
+           "AND h.status = com.shopping.product.entity.HoldStatus.ACTIVE ORDER BY h.id")
+    List<StockHold> findActiveByIdsForUpdate(@Param("ids") Collection<Long> ids);
+}
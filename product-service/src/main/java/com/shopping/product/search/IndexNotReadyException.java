@@ -0,0 +1,9 @@
+package com.shopping.product.search;
+
+// An in-memory index was asked for results before its startup build finished; its answer would be partial
+public class IndexNotReadyException extends RuntimeException {
+    
+    public IndexNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,58 @@
+package com.shopping.product.search;
+
+// Forward-only reader over a posting list snapshot, scaled by how well the term matched the query
+class PostingCursor {
+    
+    private final long[] productIds;
+    private final float[] weights;
+    private final int size;
+    private final float factor;
+    private int position;
+    
+    PostingCursor(PostingList.Snapshot snapshot, float factor) {
+        this.productIds = snapshot.productIds;
+        this.weights = snapshot.weights;
+        this.size = snapshot.size;
+        this.factor = factor;
+    }
+    
+    boolean hasCurrent() {
+        return position < size;
+    }
+    
+    long currentId() {
+        return productIds[position];
+    }
+    
+    float currentWeight() {
+        return weights[position] * factor;
+    }
+    
+    void next() {
+        position++;
+    }
+    
+    // Moves to the first posting >= productId, galloping then binary searching, and returns its
+    // weight if it is an exact match; callers must ask for ids in ascending order
+    float weightOf(long productId) {
+        int low = position;
+        int step = 1;
+        int high = position;
+        while (high < size && productIds[high] < productId) {
+            low = high + 1;
+            high = position + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size - 1);
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (productIds[mid] < productId) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        position = low;
+        return hasCurrent() && productIds[position] == productId ? weights[position] * factor : 0f;
+    }
+}
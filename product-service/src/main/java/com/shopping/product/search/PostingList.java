@@ -0,0 +1,79 @@
+package com.shopping.product.search;
+
+import java.util.Arrays;
+
+// Product ids for one term, kept sorted in parallel primitive arrays so lookups are a binary
+// search and each posting costs 12 bytes instead of a boxed map entry. Slots below size are
+// never modified in place: appends write past every published snapshot and any other change
+// copies the arrays, so a snapshot is just the current references plus a length.
+class PostingList {
+    
+    private long[] productIds = new long[4];
+    private float[] weights = new float[4];
+    private int size;
+    
+    synchronized void add(long productId, float weight) {
+        int index = Arrays.binarySearch(productIds, 0, size, productId);
+        if (index >= 0) {
+            float[] updated = Arrays.copyOf(weights, weights.length);
+            updated[index] += weight;
+            weights = updated;
+            return;
+        }
+        int insertAt = -index - 1;
+        if (insertAt == size && size < productIds.length) {
+            productIds[size] = productId;
+            weights[size] = weight;
+            size++;
+            return;
+        }
+        int capacity = size < productIds.length ? productIds.length : size * 2;
+        long[] newIds = new long[capacity];
+        float[] newWeights = new float[capacity];
+        System.arraycopy(productIds, 0, newIds, 0, insertAt);
+        System.arraycopy(weights, 0, newWeights, 0, insertAt);
+        newIds[insertAt] = productId;
+        newWeights[insertAt] = weight;
+        System.arraycopy(productIds, insertAt, newIds, insertAt + 1, size - insertAt);
+        System.arraycopy(weights, insertAt, newWeights, insertAt + 1, size - insertAt);
+        productIds = newIds;
+        weights = newWeights;
+        size++;
+    }
+    
+    synchronized void remove(long productId) {
+        int index = Arrays.binarySearch(productIds, 0, size, productId);
+        if (index < 0) {
+            return;
+        }
+        long[] newIds = new long[productIds.length];
+        float[] newWeights = new float[weights.length];
+        System.arraycopy(productIds, 0, newIds, 0, index);
+        System.arraycopy(weights, 0, newWeights, 0, index);
+        System.arraycopy(productIds, index + 1, newIds, index, size - index - 1);
+        System.arraycopy(weights, index + 1, newWeights, index, size - index - 1);
+        productIds = newIds;
+        weights = newWeights;
+        size--;
+    }
+    
+    synchronized Snapshot snapshot() {
+        return new Snapshot(productIds, weights, size);
+    }
+    
+    synchronized int size() {
+        return size;
+    }
+    
+    static class Snapshot {
+        final long[] productIds;
+        final float[] weights;
+        final int size;
+        
+        Snapshot(long[] productIds, float[] weights, int size) {
+            this.productIds = productIds;
+            this.weights = weights;
+            this.size = size;
+        }
+    }
+}
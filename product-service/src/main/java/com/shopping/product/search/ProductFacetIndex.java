@@ -0,0 +1,331 @@
+package com.shopping.product.search;
+
+import com.shopping.product.datasource.ReplicaRouting;
+import com.shopping.product.dto.ProductSummary;
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.repository.ProductRepository;
+import com.shopping.product.service.StockBucketService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Secondary indexes over price, name and stock for filtered, sorted listings. Each is a skip list
+// ordered by its attribute and then id, so a range on the sort attribute, or the first results
+// after a given product, is a seek plus a walk over the results. Filters on the other attributes
+// are checked on the entries walked. Entries are immutable and replaced whole, newer versions
+// winning. New products are indexed from their creation event; stock changes mark the product
+// stale and a background refresh reloads stale products in batches, so a burst of decrements to
+// one product costs one reload. Stock is what product reads show: bucket totals for split products
+// and the last flush for hot ones.
+@Component
+public class ProductFacetIndex {
+    
+    public enum SortField {
+        PRICE,
+        NAME,
+        STOCK
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final long REBUILD_RETRY_DELAY_MILLIS = 5000;
+    
+    private static final Comparator<FacetEntry> BY_PRICE =
+            Comparator.comparing((FacetEntry entry) -> entry.price).thenComparingLong(entry -> entry.id);
+    private static final Comparator<FacetEntry> BY_NAME =
+            Comparator.comparing((FacetEntry entry) -> entry.nameKey).thenComparingLong(entry -> entry.id);
+    private static final Comparator<FacetEntry> BY_STOCK =
+            Comparator.comparingInt((FacetEntry entry) -> entry.stock).thenComparingLong(entry -> entry.id);
+    
+    private final ProductRepository productRepository;
+    private final StockBucketService stockBucketService;
+    private final Duration refreshInterval;
+    
+    private final Map<Long, FacetEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<FacetEntry> byPrice = new ConcurrentSkipListSet<>(BY_PRICE);
+    private final ConcurrentSkipListSet<FacetEntry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final ConcurrentSkipListSet<FacetEntry> byStock = new ConcurrentSkipListSet<>(BY_STOCK);
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    // Writers are serialized; queries take no lock and skip entries replaced while they walk
+    private final Object writeLock = new Object();
+    
+    private volatile boolean ready;
+    private ScheduledExecutorService refresher;
+    
+    public ProductFacetIndex(ProductRepository productRepository,
+                             StockBucketService stockBucketService,
+                             @Value("${product.facets.refresh-interval:100ms}") Duration refreshInterval) {
+        this.productRepository = productRepository;
+        this.stockBucketService = stockBucketService;
+        this.refreshInterval = refreshInterval;
+    }
+    
+    @PostConstruct
+    public void start() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-facet-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+    
+    // Products with a price in [minPrice, maxPrice] (either bound optional) and at least minStock
+    // units, in sort order, starting after the product afterId holds in that order now
+    public List<ProductSummary> filter(BigDecimal minPrice, BigDecimal maxPrice, int minStock,
+                                       SortField sort, boolean descending, Long afterId, int limit) {
+        NavigableSet<FacetEntry> index;
+        FacetEntry from = null;
+        FacetEntry to = null;
+        switch (sort) {
+            case PRICE -> {
+                index = byPrice;
+                from = minPrice != null ? probe(minPrice, null, 0, Long.MIN_VALUE) : null;
+                to = maxPrice != null ? probe(maxPrice, null, 0, Long.MAX_VALUE) : null;
+            }
+            case NAME -> index = byName;
+            case STOCK -> {
+                index = byStock;
+                from = minStock > 0 ? probe(null, null, minStock, Long.MIN_VALUE) : null;
+            }
+            default -> throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        Comparator<? super FacetEntry> order = index.comparator();
+        
+        boolean fromInclusive = true;
+        boolean toInclusive = true;
+        if (afterId != null) {
+            FacetEntry after = entries.get(afterId);
+            if (after == null) {
+                throw new IllegalArgumentException("Unknown product to continue after: " + afterId);
+            }
+            // The cursor tightens whichever end the walk starts from
+            if (!descending && (from == null || order.compare(after, from) >= 0)) {
+                from = after;
+                fromInclusive = false;
+            } else if (descending && (to == null || order.compare(after, to) <= 0)) {
+                to = after;
+                toInclusive = false;
+            }
+        }
+        if (from != null && to != null && order.compare(from, to) > 0) {
+            return List.of();
+        }
+        
+        NavigableSet<FacetEntry> range;
+        if (from != null && to != null) {
+            range = index.subSet(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            range = index.tailSet(from, fromInclusive);
+        } else if (to != null) {
+            range = index.headSet(to, toInclusive);
+        } else {
+            range = index;
+        }
+        if (descending) {
+            range = range.descendingSet();
+        }
+        
+        List<ProductSummary> results = new ArrayList<>(limit);
+        for (FacetEntry entry : range) {
+            if (entries.get(entry.id) != entry || !entry.matches(minPrice, maxPrice, minStock)) {
+                continue;
+            }
+            results.add(entry.toSummary());
+            if (results.size() == limit) {
+                break;
+            }
+        }
+        return results;
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    // False until the startup build (or a snapshot load) has indexed every product
+    public boolean isReady() {
+        return ready;
+    }
+    
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        if (event.getChangeType() == ChangeType.CREATED && product != null && product.getStockBuckets() == 0) {
+            upsert(new FacetEntry(product.getId(), product.getName(), product.getPrice(),
+                    product.getStock(), product.getVersion()));
+        } else {
+            stale.add(event.getProductId());
+        }
+    }
+    
+    // Seeds the index with summaries read elsewhere, e.g. a catalog snapshot; the startup rebuild
+    // from the database is skipped once the index is ready
+    public void load(Collection<ProductSummary> summaries) {
+        for (ProductSummary summary : summaries) {
+            upsert(FacetEntry.of(summary));
+        }
+        ready = true;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (ready) {
+            return;
+        }
+        Thread rebuild = new Thread(this::rebuild, "product-facet-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+    
+    // Filters are refused until it completes, so a failed page is retried from where it stopped
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        long afterId = 0L;
+        int loaded = 0;
+        while (true) {
+            try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+                List<ProductSummary> page;
+                do {
+                    page = stockBucketService.applyTotals(
+                            productRepository.findSummaryPageAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE)));
+                    for (ProductSummary summary : page) {
+                        upsert(FacetEntry.of(summary));
+                        afterId = summary.getId();
+                    }
+                    loaded += page.size();
+                } while (page.size() == LOAD_BATCH_SIZE);
+                ready = true;
+                logger.info("Product facet index built: {} products in {}ms", loaded, System.currentTimeMillis() - start);
+                return;
+            } catch (Exception e) {
+                logger.error("Product facet index rebuild failed after {} products; retrying in {}ms",
+                        loaded, REBUILD_RETRY_DELAY_MILLIS, e);
+            }
+            try {
+                Thread.sleep(REBUILD_RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+    
+    // Reads from the primary, so a lagging replica cannot put the pre-change state back
+    void refresh() {
+        while (!stale.isEmpty()) {
+            List<Long> ids = new ArrayList<>(LOAD_BATCH_SIZE);
+            Iterator<Long> iterator = stale.iterator();
+            while (iterator.hasNext() && ids.size() < LOAD_BATCH_SIZE) {
+                ids.add(iterator.next());
+                iterator.remove();
+            }
+            try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+                for (ProductSummary summary : stockBucketService.applyTotals(productRepository.findSummariesByIds(ids))) {
+                    upsert(FacetEntry.of(summary));
+                }
+            } catch (RuntimeException e) {
+                stale.addAll(ids);
+                throw e;
+            }
+        }
+    }
+    
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.error("Product facet refresh failed; retrying on the next interval", e);
+        }
+    }
+    
+    private void upsert(FacetEntry entry) {
+        synchronized (writeLock) {
+            FacetEntry current = entries.get(entry.id);
+            if (current != null) {
+                if (current.version > entry.version) {
+                    return;
+                }
+                byPrice.remove(current);
+                byName.remove(current);
+                byStock.remove(current);
+            }
+            entries.put(entry.id, entry);
+            byPrice.add(entry);
+            byName.add(entry);
+            byStock.add(entry);
+        }
+    }
+    
+    // Bounds for a range: sorts before or after every real entry with the same attribute value
+    private static FacetEntry probe(BigDecimal price, String name, int stock, long id) {
+        return new FacetEntry(id, name, price, stock, 0L);
+    }
+    
+    private static final class FacetEntry {
+        private final long id;
+        private final String name;
+        private final String nameKey;
+        private final BigDecimal price;
+        private final int stock;
+        private final long version;
+        
+        private FacetEntry(long id, String name, BigDecimal price, int stock, long version) {
+            this.id = id;
+            this.name = name;
+            this.nameKey = name != null ? name.toLowerCase(Locale.ROOT) : "";
+            this.price = price;
+            this.stock = stock;
+            this.version = version;
+        }
+        
+        private static FacetEntry of(ProductSummary summary) {
+            return new FacetEntry(summary.getId(), summary.getName(), summary.getPrice(),
+                    summary.getStock(), summary.getVersion());
+        }
+        
+        private boolean matches(BigDecimal minPrice, BigDecimal maxPrice, int minStock) {
+            return stock >= minStock
+                    && (minPrice == null || price.compareTo(minPrice) >= 0)
+                    && (maxPrice == null || price.compareTo(maxPrice) <= 0);
+        }
+        
+        private ProductSummary toSummary() {
+            return new ProductSummary(id, name, price, stock, version, 0);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.shopping.product.search;
+
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+@Component
+public class ProductSearchIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+    
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final long REBUILD_RETRY_DELAY_MILLIS = 5000;
+    
+    private final ProductRepository productRepository;
+    
+    // Sorted by term so a prefix query is a sub-map range scan
+    private final ConcurrentSkipListMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Set<String>> termsByProduct = new ConcurrentHashMap<>();
+    // Writers are rare (creates and the startup rebuild) and serialized; searches take no lock
+    private final Object writeLock = new Object();
+    
+    private volatile boolean ready;
+    
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+    
+    public List<Long> search(String query, int limit) {
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        List<List<TermMatch>> matchesPerToken = new ArrayList<>();
+        for (String token : queryTokens) {
+            List<TermMatch> matches = expand(token);
+            if (matches.isEmpty()) {
+                // Every query token has to match, so one unknown token means no results
+                return List.of();
+            }
+            matchesPerToken.add(matches);
+        }
+        
+        // Drive the intersection from the token with the fewest postings and probe the others
+        matchesPerToken.sort(Comparator.comparingInt(ProductSearchIndex::postingCount));
+        PostingCursor[] driver = cursors(matchesPerToken.get(0));
+        PostingCursor[][] probes = new PostingCursor[matchesPerToken.size() - 1][];
+        for (int t = 1; t < matchesPerToken.size(); t++) {
+            probes[t - 1] = cursors(matchesPerToken.get(t));
+        }
+        
+        // Driver cursors form a min-heap on their current id, so candidates come out in ascending
+        // id order and the probe cursors only ever move forward
+        int heapSize = 0;
+        for (PostingCursor cursor : driver) {
+            if (cursor.hasCurrent()) {
+                driver[heapSize++] = cursor;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(driver, heapSize, i);
+        }
+        
+        TopK top = new TopK(limit);
+        while (heapSize > 0) {
+            long productId = driver[0].currentId();
+            float score = 0f;
+            while (heapSize > 0 && driver[0].currentId() == productId) {
+                score = Math.max(score, driver[0].currentWeight());
+                driver[0].next();
+                if (!driver[0].hasCurrent()) {
+                    driver[0] = driver[--heapSize];
+                }
+                siftDown(driver, heapSize, 0);
+            }
+            
+            for (int t = 0; t < probes.length && score > 0f; t++) {
+                float best = 0f;
+                for (PostingCursor cursor : probes[t]) {
+                    best = Math.max(best, cursor.weightOf(productId));
+                }
+                score = best == 0f ? 0f : score + best;
+            }
+            if (score > 0f) {
+                top.offer(productId, score);
+            }
+        }
+        
+        return top.ranked();
+    }
+    
+    // False until the startup build (or a snapshot load) has indexed every product
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public void index(Product product) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String token : tokenize(product.getName())) {
+            weights.merge(token, NAME_WEIGHT, Float::sum);
+        }
+        for (String token : tokenize(product.getDescription())) {
+            weights.merge(token, DESCRIPTION_WEIGHT, Float::sum);
+        }
+        
+        synchronized (writeLock) {
+            removeTerms(product.getId());
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, key -> new PostingList()).add(product.getId(), weight));
+            termsByProduct.put(product.getId(), weights.keySet());
+        }
+    }
+    
+    // Seeds the index with products read elsewhere, e.g. a catalog snapshot; the startup rebuild
+    // from the database is skipped once the index is ready
+    public void load(Collection<Product> products) {
+        for (Product product : products) {
+            index(product);
+        }
+        ready = true;
+    }
+    
+    public void remove(Long productId) {
+        synchronized (writeLock) {
+            removeTerms(productId);
+        }
+    }
+    
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // Stock changes never touch name or description, so only new products need indexing
+        if (event.getChangeType() != ChangeType.CREATED) {
+            return;
+        }
+        if (event.getProduct() != null) {
+            index(event.getProduct());
+        } else {
+            productRepository.findById(event.getProductId()).ifPresent(this::index);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (ready) {
+            return;
+        }
+        Thread rebuild = new Thread(this::rebuild, "product-search-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+    
+    // Searches are refused until it completes, so a failed page is retried from where it stopped
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        long afterId = 0L;
+        int indexed = 0;
+        while (true) {
+            try {
+                List<Product> page;
+                do {
+                    page = productRepository.findPageAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                    for (Product product : page) {
+                        index(product);
+                        afterId = product.getId();
+                    }
+                    indexed += page.size();
+                } while (page.size() == REBUILD_PAGE_SIZE);
+                ready = true;
+                logger.info("Product search index built: {} products, {} terms in {}ms",
+                        indexed, postings.size(), System.currentTimeMillis() - start);
+                return;
+            } catch (Exception e) {
+                logger.error("Product search index rebuild failed after {} products; retrying in {}ms",
+                        indexed, REBUILD_RETRY_DELAY_MILLIS, e);
+            }
+            try {
+                Thread.sleep(REBUILD_RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+    
+    private void removeTerms(Long productId) {
+        Set<String> terms = termsByProduct.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(productId);
+                if (list.size() == 0) {
+                    postings.remove(term, list);
+                }
+            }
+        }
+    }
+    
+    private List<TermMatch> expand(String token) {
+        List<TermMatch> matches = new ArrayList<>();
+        NavigableMap<String, PostingList> range = postings.subMap(token, true, token + Character.MAX_VALUE, true);
+        for (Map.Entry<String, PostingList> entry : range.entrySet()) {
+            float factor = entry.getKey().equals(token) ? 1.0f : PREFIX_MATCH_FACTOR;
+            matches.add(new TermMatch(entry.getValue(), factor));
+            if (matches.size() >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+        }
+        return matches;
+    }
+    
+    private static PostingCursor[] cursors(List<TermMatch> matches) {
+        PostingCursor[] cursors = new PostingCursor[matches.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = new PostingCursor(matches.get(i).postings.snapshot(), matches.get(i).factor);
+        }
+        return cursors;
+    }
+    
+    private static void siftDown(PostingCursor[] heap, int size, int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left].currentId() < heap[smallest].currentId()) {
+                smallest = left;
+            }
+            if (right < size && heap[right].currentId() < heap[smallest].currentId()) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            PostingCursor swap = heap[index];
+            heap[index] = heap[smallest];
+            heap[smallest] = swap;
+            index = smallest;
+        }
+    }
+    
+    private static int postingCount(List<TermMatch> matches) {
+        int count = 0;
+        for (TermMatch match : matches) {
+            count += match.postings.size();
+        }
+        return count;
+    }
+    
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+    
+    // Bounded min-heap over primitive arrays; the weakest of the current top results sits at the root
+    private static class TopK {
+        private final long[] productIds;
+        private final float[] scores;
+        private int size;
+        
+        private TopK(int limit) {
+            this.productIds = new long[limit];
+            this.scores = new float[limit];
+        }
+        
+        private void offer(long productId, float score) {
+            if (size < productIds.length) {
+                productIds[size] = productId;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (ranksAbove(productId, score, 0)) {
+                productIds[0] = productId;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+        
+        private List<Long> ranked() {
+            List<Long> ranked = new ArrayList<>(size);
+            while (size > 0) {
+                ranked.add(productIds[0]);
+                size--;
+                productIds[0] = productIds[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            Collections.reverse(ranked);
+            return ranked;
+        }
+        
+        // Higher score ranks above; equal scores favour the lower (older) product id
+        private boolean ranksAbove(long productId, float score, int index) {
+            return score > scores[index] || (score == scores[index] && productId < productIds[index]);
+        }
+        
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!ranksAbove(productIds[parent], scores[parent], index)) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+        
+        private void siftDown(int index) {
+            while (true) {
+                int weakest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && ranksAbove(productIds[weakest], scores[weakest], left)) {
+                    weakest = left;
+                }
+                if (right < size && ranksAbove(productIds[weakest], scores[weakest], right)) {
+                    weakest = right;
+                }
+                if (weakest == index) {
+                    return;
+                }
+                swap(index, weakest);
+                index = weakest;
+            }
+        }
+        
+        private void swap(int a, int b) {
+            long id = productIds[a];
+            productIds[a] = productIds[b];
+            productIds[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+    
+    private static class TermMatch {
+        private final PostingList postings;
+        private final float factor;
+        
+        private TermMatch(PostingList postings, float factor) {
+            this.postings = postings;
+            this.factor = factor;
+        }
+    }
+}
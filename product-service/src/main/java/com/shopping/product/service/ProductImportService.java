@@ -0,0 +1,233 @@
+package com.shopping.product.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.product.dto.ProductImportResult;
+import com.shopping.product.dto.ProductImportResult.RowError;
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class ProductImportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final List<String> CSV_COLUMNS = List.of("name", "description", "price", "stock");
+    
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    
+    public ProductImportService(ProductRepository productRepository,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                @Value("${product.import.batch-size:500}") int batchSize) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+    
+    // Reads a JSON array of products one element at a time; only the current batch is held in memory
+    public ProductImportResult importJson(InputStream input) throws IOException {
+        ImportBatch batch = new ImportBatch();
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of products");
+            }
+            long row = 0;
+            while (true) {
+                JsonNode node;
+                try {
+                    if (parser.nextToken() == JsonToken.END_ARRAY) {
+                        break;
+                    }
+                    row++;
+                    node = parser.readValueAsTree();
+                } catch (JsonProcessingException e) {
+                    // The stream itself is broken, so nothing after this point can be read
+                    batch.reject(row, "Malformed JSON: " + e.getOriginalMessage());
+                    break;
+                }
+                try {
+                    batch.add(row, objectMapper.treeToValue(node, Product.class));
+                } catch (JsonProcessingException e) {
+                    batch.reject(row, "Invalid product: " + e.getOriginalMessage());
+                }
+            }
+        }
+        return batch.finish();
+    }
+    
+    // Reads CSV with a header row naming the name, description, price and stock columns
+    public ProductImportResult importCsv(InputStream input) throws IOException {
+        ImportBatch batch = new ImportBatch();
+        CsvRecordReader reader = new CsvRecordReader(
+                new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        
+        List<String> header = reader.next();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV input is empty");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+            throw new IllegalArgumentException("CSV header must contain columns " + CSV_COLUMNS);
+        }
+        
+        long row = 0;
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            row++;
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            if (fields.size() != header.size()) {
+                batch.reject(row, "Expected " + header.size() + " fields but found " + fields.size());
+                continue;
+            }
+            try {
+                Product product = new Product(
+                        fields.get(columns.get("name")),
+                        fields.get(columns.get("description")),
+                        new BigDecimal(fields.get(columns.get("price")).trim()),
+                        Integer.valueOf(fields.get(columns.get("stock")).trim())
+                );
+                batch.add(row, product);
+            } catch (NumberFormatException e) {
+                batch.reject(row, "Invalid number: " + e.getMessage());
+            }
+        }
+        return batch.finish();
+    }
+    
+    private String validate(Product product) {
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+    
+    private class ImportBatch {
+        private final ProductImportResult result = new ProductImportResult();
+        private final List<Product> products = new ArrayList<>();
+        private final List<Long> rows = new ArrayList<>();
+        
+        void add(long row, Product product) {
+            // Ids and versions are always assigned by the server
+            product.setId(null);
+            product.setVersion(null);
+            String violations = validate(product);
+            if (violations != null) {
+                reject(row, violations);
+                return;
+            }
+            products.add(product);
+            rows.add(row);
+            if (products.size() >= batchSize) {
+                flush();
+            }
+        }
+        
+        void reject(long row, String message) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new RowError(row, message));
+            }
+        }
+        
+        ProductImportResult finish() {
+            flush();
+            return result;
+        }
+        
+        // One transaction and one JDBC batch per chunk instead of a round trip and commit per row
+        private void flush() {
+            if (products.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    productRepository.saveAll(products);
+                    entityManager.flush();
+                    entityManager.clear();
+                    for (Product product : products) {
+                        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), ChangeType.CREATED, product));
+                    }
+                });
+                result.setImported(result.getImported() + products.size());
+            } catch (Exception e) {
+                // Retry the chunk one row per transaction, so only the rows at fault are rejected
+                logger.warn("Product import batch of {} rows starting at row {} failed; retrying row by row",
+                        products.size(), rows.get(0), e);
+                for (int i = 0; i < products.size(); i++) {
+                    insert(rows.get(i), products.get(i));
+                }
+            }
+            products.clear();
+            rows.clear();
+        }
+        
+        private void insert(long row, Product product) {
+            // Ids and versions handed out by the failed chunk were rolled back with it
+            product.setId(null);
+            product.setVersion(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    productRepository.save(product);
+                    entityManager.flush();
+                    entityManager.clear();
+                    eventPublisher.publishEvent(new ProductChangedEvent(product.getId(), ChangeType.CREATED, product));
+                });
+                result.setImported(result.getImported() + 1);
+            } catch (Exception e) {
+                reject(row, "Insert failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,29 +1,257 @@
 package com.shopping.product.service;
 
+import com.shopping.product.cache.ProductCache;
+import com.shopping.product.datasource.ReplicaRouting;
+import com.shopping.product.dto.BucketTotals;
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.dto.ProductPage;
+import com.shopping.product.dto.ProductPricing;
+import com.shopping.product.dto.ProductSummary;
+import com.shopping.product.dto.ProductSummaryPage;
+import com.shopping.product.dto.StockAvailability;
+import com.shopping.product.dto.StockBucketsResponse;
+import com.shopping.product.dto.StockReservationItem;
+import com.shopping.product.dto.StockResponse;
 import com.shopping.product.entity.Product;
+import com.shopping.product.event.HotStockReleasedEvent;
+import com.shopping.product.event.HotStockReservedEvent;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.inventory.HotStockEngine;
 import com.shopping.product.repository.ProductRepository;
+import com.shopping.product.search.IndexNotReadyException;
+import com.shopping.product.search.ProductFacetIndex;
+import com.shopping.product.search.ProductFacetIndex.SortField;
+import com.shopping.product.search.ProductSearchIndex;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class ProductService {
     
+    public static final int MAX_BATCH_SIZE = 500;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_SEARCH_RESULTS = 100;
+    
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ProductSearchIndex searchIndex;
+    private final HotStockEngine hotStockEngine;
+    private final StockBucketService stockBucketService;
+    private final StockWriteRetry stockWriteRetry;
+    private final ProductFacetIndex facetIndex;
     
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductCache productCache,
+                          ApplicationEventPublisher eventPublisher,
+                          EntityManager entityManager,
+                          ProductSearchIndex searchIndex,
+                          HotStockEngine hotStockEngine,
+                          StockBucketService stockBucketService,
+                          StockWriteRetry stockWriteRetry,
+                          ProductFacetIndex facetIndex) {
         this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.searchIndex = searchIndex;
+        this.hotStockEngine = hotStockEngine;
+        this.stockBucketService = stockBucketService;
+        this.stockWriteRetry = stockWriteRetry;
+        this.facetIndex = facetIndex;
+    }
+    
+    @Transactional(readOnly = true)
+    public ProductPage getProductPage(Long afterId, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<Product> items = withHotStock(
+                withBucketTotals(productRepository.findPageAfter(afterId, PageRequest.of(0, size))));
+        Long nextAfterId = items.size() == size ? items.get(items.size() - 1).getId() : null;
+        return new ProductPage(items, nextAfterId);
+    }
+    
+    @Transactional(readOnly = true)
+    public ProductSummaryPage getProductSummaryPage(Long afterId, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<ProductSummary> items = stockBucketService.applyTotals(
+                productRepository.findSummaryPageAfter(afterId, PageRequest.of(0, size)));
+        Long nextAfterId = items.size() == size ? items.get(items.size() - 1).getId() : null;
+        return new ProductSummaryPage(items, nextAfterId);
+    }
+    
+    // Served from the facet index without touching the database; afterId is the last product of the
+    // previous page, and the next page starts after wherever that product sorts now
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ProductSummaryPage filterProducts(BigDecimal minPrice, BigDecimal maxPrice, boolean inStock,
+                                             String sort, String order, Long afterId, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((minPrice != null && minPrice.signum() < 0) || (maxPrice != null && maxPrice.signum() < 0)) {
+            throw new IllegalArgumentException("Price bounds cannot be negative");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice cannot exceed maxPrice");
+        }
+        SortField sortField = switch (sort.toLowerCase(Locale.ROOT)) {
+            case "price" -> SortField.PRICE;
+            case "name" -> SortField.NAME;
+            case "stock" -> SortField.STOCK;
+            default -> throw new IllegalArgumentException("Sort must be one of price, name, stock");
+        };
+        boolean descending = switch (order.toLowerCase(Locale.ROOT)) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new IllegalArgumentException("Order must be asc or desc");
+        };
+        
+        if (!facetIndex.isReady()) {
+            throw new IndexNotReadyException("Product facet index is still being built");
+        }
+        List<ProductSummary> items = facetIndex.filter(minPrice, maxPrice, inStock ? 1 : 0,
+                sortField, descending, afterId, size);
+        Long nextAfterId = items.size() == size ? items.get(items.size() - 1).getId() : null;
+        return new ProductSummaryPage(items, nextAfterId);
+    }
+    
+    // Pricing never involves stock, so it is read straight from the row and bypasses the product cache
+    @Transactional(readOnly = true)
+    public Optional<ProductPricing> getProductPricing(Long id) {
+        return productRepository.findPricingById(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ProductPricing> getProductPricing(Collection<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size cannot exceed " + MAX_BATCH_SIZE);
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return productRepository.findPricingByIds(ids);
+    }
+    
+    // Hands every product to the consumer as it is read, detaching each one so the
+    // persistence context does not grow with the catalog
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<Product> consumer) {
+        // Split products are few, so their totals are read up front rather than per row
+        Map<Long, BucketTotals> bucketTotals = stockBucketService.getAllTotals();
+        try (Stream<Product> products = productRepository.streamAll()) {
+            products.forEach(product -> {
+                BucketTotals totals = bucketTotals.get(product.getId());
+                if (totals != null) {
+                    applyBucketTotals(product, totals);
+                }
+                consumer.accept(withHotStock(product));
+                entityManager.detach(product);
+            });
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public CatalogVersion getCatalogVersion() {
+        CatalogVersion version = productRepository.findCatalogVersion();
+        version.setVersionSum(version.getVersionSum() + stockBucketService.sumVersions()
+                + hotStockEngine.unflushedVersions());
+        return version;
     }
     
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    // Products whose stock and version are held in memory and run ahead of their rows
+    public Set<Long> getHotProductIds() {
+        return hotStockEngine.getHotProductIds();
     }
     
+    // Cache fills read from the primary, so a lagging replica cannot put a pre-change copy back into
+    // the cache right after a change evicted it. Hot stock moves without evicting, so it is laid
+    // over the cached copy on every read
+    @Transactional(readOnly = true)
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return Optional.ofNullable(productCache.get(id, key -> {
+            try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+                return productRepository.findById(key)
+                        .map(product -> withBucketTotals(List.of(product)).get(0))
+                        .orElse(null);
+            }
+        })).map(this::withHotStock);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size cannot exceed " + MAX_BATCH_SIZE);
+        }
+        
+        // Serve cached entries and read only the misses; bulk reads do not populate the cache
+        // because they cannot be ordered against concurrent invalidations the way single loads are
+        List<Product> products = new ArrayList<>();
+        Set<Long> misses = new HashSet<>();
+        for (Long id : ids) {
+            Product cached = productCache.getIfPresent(id);
+            if (cached != null) {
+                products.add(cached);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            products.addAll(withBucketTotals(productRepository.findAllById(misses)));
+        }
+        return withHotStock(products);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Product> searchProducts(String query, int limit) {
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        if (!searchIndex.isReady()) {
+            throw new IndexNotReadyException("Product search index is still being built");
+        }
+        List<Long> rankedIds = searchIndex.search(query, limit);
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, Product> productsById = new HashMap<>();
+        for (Product product : getProductsByIds(rankedIds)) {
+            productsById.put(product.getId(), product);
+        }
+        List<Product> results = new ArrayList<>(rankedIds.size());
+        for (Long id : rankedIds) {
+            Product product = productsById.get(id);
+            if (product != null) {
+                results.add(product);
+            }
+        }
+        return results;
     }
     
     public Product createProduct(Product product) {
@@ -33,38 +261,298 @@ public class ProductService {
         if (product.getStock() < 0) {
             throw new IllegalArgumentException("Stock cannot be negative");
         }
-        return productRepository.save(product);
+        // Left to Hibernate, which starts new rows at version 0
+        product.setVersion(null);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId(), ChangeType.CREATED, saved));
+        return saved;
     }
     
-    public Product updateStock(Long productId, Integer newStock) {
+    // expectedVersion, when given, is the version the caller last read (from the product ETag); the
+    // update is refused with an IllegalStateException if the product has changed since. Without it
+    // the new stock wins, retried if a concurrent write lands between the read and the save
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Product updateStock(Long productId, Integer newStock, Long expectedVersion) {
         if (newStock < 0) {
             throw new IllegalArgumentException("Stock cannot be negative");
         }
-        
+        return stockWriteRetry.execute("update", productId, () -> setStock(productId, newStock, expectedVersion));
+    }
+    
+    private Product setStock(Long productId, Integer newStock, Long expectedVersion) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
         
+        if (expectedVersion != null && !expectedVersion.equals(visibleVersion(product))) {
+            throw new IllegalStateException("Product " + productId + " has changed since version " + expectedVersion);
+        }
+        
+        if (hotStockEngine.isHot(productId)) {
+            // The engine owns this product's stock; the row catches up on its next flush
+            hotStockEngine.setStock(productId, newStock);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+            return withHotStock(product);
+        }
+        
+        if (product.getStockBuckets() > 0) {
+            BucketTotals totals = stockBucketService.setStock(productId, newStock);
+            if (totals != null) {
+                eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+                applyBucketTotals(product, totals);
+                return product;
+            }
+        }
+        
+        if (productRepository.updateStock(productId, product.getVersion(), newStock) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Product.class, productId);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+        
+        // The update cleared the persistence context, so this copy is detached and can mirror the row
         product.setStock(newStock);
-        return productRepository.save(product);
+        product.setVersion(product.getVersion() + 1);
+        return product;
     }
     
+    @Transactional(readOnly = true)
     public boolean isStockAvailable(Long productId, Integer quantity) {
-        Optional<Product> productOpt = productRepository.findById(productId);
+        Integer hotStock = hotStockEngine.getStock(productId);
+        if (hotStock != null) {
+            return hotStock >= quantity;
+        }
+        Optional<Product> productOpt = getProductById(productId);
         if (productOpt.isEmpty()) {
             return false;
         }
         return productOpt.get().getStock() >= quantity;
     }
     
-    public void reduceStock(Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
+    // Verdicts for many products from one lookup; repeated product ids are checked against their total
+    @Transactional(readOnly = true)
+    public List<StockAvailability> checkAvailability(List<StockReservationItem> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (StockReservationItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        
+        Map<Long, Integer> stockById = new HashMap<>();
+        for (Product product : getProductsByIds(quantities.keySet())) {
+            stockById.put(product.getId(), product.getStock());
+        }
+        
+        List<StockAvailability> results = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, requested) -> {
+            Integer hotStock = hotStockEngine.getStock(productId);
+            Integer stock = hotStock != null ? hotStock : stockById.get(productId);
+            results.add(new StockAvailability(productId, requested, stock, stock != null && stock >= requested));
+        });
+        return results;
+    }
+    
+    // Runs outside the class-level transaction: hot products are decided in memory without a
+    // connection or row lock, and everything else gets a transaction of its own, repeated if it
+    // loses a race such as a deadlock between bucket rebalances
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Integer reduceStock(Long productId, Integer quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (hotStockEngine.isHot(productId)) {
+            return hotStockEngine.reserve(productId, quantity);
+        }
+        return stockWriteRetry.execute("reduce", productId, () -> decrementStoredStock(productId, quantity));
+    }
+    
+    private Integer decrementStoredStock(Long productId, Integer quantity) {
+        Integer buckets = productRepository.findStockBucketsById(productId);
+        if (buckets == null) {
+            throw new IllegalArgumentException("Product not found with id: " + productId);
+        }
+        if (buckets > 0) {
+            Integer remaining = stockBucketService.take(productId, quantity);
+            // No buckets left means the product was merged back concurrently; use its row instead
+            if (remaining != null) {
+                eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+                return remaining;
+            }
+        }
+        
+        int updated = productRepository.decrementStock(productId, quantity);
+        if (updated == 0) {
+            throw new IllegalStateException("Insufficient stock for product: " + productId);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
         
-        if (product.getStock() < quantity) {
-            throw new IllegalArgumentException("Insufficient stock for product: " + product.getName());
+        // The row is locked by the update until commit, so this read sees our own decrement
+        return productRepository.findStockById(productId);
+    }
+    
+    // All or nothing: every line is a guarded decrement, so no row is read and locked up front,
+    // and a short line rolls back the ones before it. Joins the caller's transaction if there is
+    // one, otherwise runs in its own and is repeated if it loses a race
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<StockResponse> reserveStock(List<StockReservationItem> items) {
+        // Merge duplicate lines; TreeMap writes product rows in ascending id order, the same in every
+        // reservation, so two reservations cannot deadlock on each other's rows
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, Integer> hotQuantities = new TreeMap<>();
+        for (StockReservationItem item : items) {
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            Map<Long, Integer> lines = hotStockEngine.isHot(item.getProductId()) ? hotQuantities : quantities;
+            lines.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        
+        return stockWriteRetry.execute("reserve", null, () -> {
+            List<StockResponse> reserved = new ArrayList<>();
+            quantities.forEach((productId, quantity) ->
+                    reserved.add(new StockResponse(productId, decrementStoredStock(productId, quantity))));
+            
+            // Hot lines go last, once the stored lines are known to fit; the engine hands each one
+            // back if this transaction rolls back
+            hotQuantities.forEach((productId, quantity) -> {
+                int remaining = hotStockEngine.reserve(productId, quantity);
+                eventPublisher.publishEvent(new HotStockReservedEvent(productId, quantity));
+                reserved.add(new StockResponse(productId, remaining));
+            });
+            return reserved;
+        });
+    }
+    
+    // Puts stock taken by reserveStock back on sale, e.g. when a hold is released or expires. Each
+    // write only applies to the stock layout it was read for, so a concurrent split or merge makes
+    // the attempt conflict and start over instead of returning stock where no reader looks
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void returnStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> storedQuantities = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (hotStockEngine.isHot(productId)) {
+                // The engine takes it back once this transaction commits
+                eventPublisher.publishEvent(new HotStockReleasedEvent(productId, quantity));
+            } else {
+                storedQuantities.put(productId, quantity);
+            }
+        });
+        if (storedQuantities.isEmpty()) {
+            return;
         }
         
-        product.setStock(product.getStock() - quantity);
-        productRepository.save(product);
+        stockWriteRetry.execute("return", null, () -> {
+            storedQuantities.forEach((productId, quantity) -> {
+                Integer buckets = productRepository.findStockBucketsById(productId);
+                if (buckets == null) {
+                    return;
+                }
+                boolean returned = buckets > 0
+                        ? stockBucketService.give(productId, buckets, quantity)
+                        : productRepository.incrementStock(productId, quantity) == 1;
+                if (!returned) {
+                    throw new ObjectOptimisticLockingFailureException(Product.class, productId);
+                }
+                eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+            });
+            return null;
+        });
+    }
+    
+    // Splits the product's stock across the given number of bucket rows; one bucket merges it back.
+    // The products row is only written if nothing changed it since it was read
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StockBucketsResponse configureStockBuckets(Long productId, int buckets) {
+        if (hotStockEngine.isHot(productId)) {
+            throw new IllegalArgumentException("Stock of hot product " + productId + " is held in memory and cannot be split");
+        }
+        return stockWriteRetry.execute("split", productId, () -> {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
+            
+            BucketTotals drained = stockBucketService.drain(productId);
+            long stock = product.getStock() + drained.getStock();
+            List<Integer> shares = buckets > 1 ? stockBucketService.fill(productId, stock, buckets) : List.of();
+            
+            // Bucket versions move into the product version, so the version readers see still increases
+            int updated = productRepository.updateStockLayout(productId, product.getVersion(),
+                    shares.isEmpty() ? (int) stock : 0, shares.size(), drained.getVersion() + 1);
+            if (updated == 0) {
+                throw new ObjectOptimisticLockingFailureException(Product.class, productId);
+            }
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.STOCK_CHANGED));
+            return new StockBucketsResponse(productId, (int) stock, shares);
+        });
+    }
+    
+    @Transactional(readOnly = true)
+    public StockBucketsResponse getStockBuckets(Long productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
+        List<Integer> shares = stockBucketService.getBuckets(productId);
+        int stock = shares.isEmpty() ? product.getStock() : shares.stream().mapToInt(Integer::intValue).sum();
+        return new StockBucketsResponse(productId, stock, shares);
+    }
+    
+    // Split products keep their stock in bucket rows; readers get the sum and a version that moves
+    // with every bucket write
+    private List<Product> withBucketTotals(List<Product> products) {
+        List<Long> splitIds = new ArrayList<>();
+        for (Product product : products) {
+            if (product.getStockBuckets() > 0) {
+                splitIds.add(product.getId());
+            }
+        }
+        if (splitIds.isEmpty()) {
+            return products;
+        }
+        Map<Long, BucketTotals> totals = stockBucketService.getTotals(splitIds);
+        for (Product product : products) {
+            BucketTotals productTotals = totals.get(product.getId());
+            if (productTotals != null) {
+                applyBucketTotals(product, productTotals);
+            }
+        }
+        return products;
+    }
+    
+    // The version readers are shown, which for split products includes the bucket versions and for
+    // hot products is the engine's
+    private long visibleVersion(Product product) {
+        Long hotVersion = hotStockEngine.getVersion(product.getId());
+        if (hotVersion != null) {
+            return hotVersion;
+        }
+        if (product.getStockBuckets() == 0) {
+            return product.getVersion();
+        }
+        BucketTotals totals = stockBucketService.getTotals(List.of(product.getId())).get(product.getId());
+        return product.getVersion() + (totals != null ? totals.getVersion() : 0);
+    }
+    
+    private List<Product> withHotStock(List<Product> products) {
+        List<Product> overlaid = new ArrayList<>(products.size());
+        for (Product product : products) {
+            overlaid.add(withHotStock(product));
+        }
+        return overlaid;
+    }
+    
+    // A copy carrying the engine's stock and version for hot products, so neither a cached nor a
+    // managed entity is changed; other products are returned as they are
+    private Product withHotStock(Product product) {
+        Integer stock = hotStockEngine.getStock(product.getId());
+        Long version = hotStockEngine.getVersion(product.getId());
+        if (stock == null || version == null) {
+            return product;
+        }
+        Product copy = new Product(product.getName(), product.getDescription(), product.getPrice(), stock);
+        copy.setId(product.getId());
+        copy.setVersion(version);
+        copy.setStockBuckets(product.getStockBuckets());
+        return copy;
+    }
+    
+    private void applyBucketTotals(Product product, BucketTotals totals) {
+        entityManager.detach(product);
+        product.setStock(totals.getStock().intValue());
+        product.setVersion(product.getVersion() + totals.getVersion());
     }
 }
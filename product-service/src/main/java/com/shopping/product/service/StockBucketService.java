@@ -0,0 +1,166 @@
+package com.shopping.product.service;
+
+import com.shopping.product.dto.BucketTotals;
+import com.shopping.product.dto.ProductSummary;
+import com.shopping.product.entity.ProductStockBucket;
+import com.shopping.product.repository.ProductStockBucketRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Keeps the stock of split products in product_stock_bucket rows. Concurrent decrements land on
+// different rows, so they no longer queue on a single products row lock; readers see the sum.
+@Service
+@Transactional
+public class StockBucketService {
+    
+    private final ProductStockBucketRepository bucketRepository;
+    
+    public StockBucketService(ProductStockBucketRepository bucketRepository) {
+        this.bucketRepository = bucketRepository;
+    }
+    
+    // Deletes the product's buckets and returns what they held: their stock, and their versions so
+    // the caller can fold them into the product version and keep the version readers see increasing
+    public BucketTotals drain(Long productId) {
+        long stock = 0;
+        long versions = 0;
+        for (ProductStockBucket bucket : bucketRepository.findByProductIdForUpdate(productId)) {
+            stock += bucket.getStock();
+            versions += bucket.getVersion();
+        }
+        bucketRepository.deleteByProductId(productId);
+        return new BucketTotals(productId, stock, versions);
+    }
+    
+    public List<Integer> fill(Long productId, long stock, int buckets) {
+        List<Integer> shares = shares(stock, buckets);
+        for (int i = 0; i < buckets; i++) {
+            bucketRepository.save(new ProductStockBucket(productId, i, shares.get(i)));
+        }
+        return shares;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Integer> getBuckets(Long productId) {
+        return bucketRepository.findStocksByProductId(productId);
+    }
+    
+    // Takes the quantity from one bucket, starting at a random one so concurrent buyers spread over
+    // the rows. When no single bucket holds enough, all buckets are locked and evened out before
+    // taking from the total. Returns the remaining stock, or null when the product has no buckets.
+    public Integer take(Long productId, int quantity) {
+        List<Integer> stocks = bucketRepository.findStocksByProductId(productId);
+        if (!stocks.isEmpty()) {
+            long total = stocks.stream().mapToLong(Integer::longValue).sum();
+            int start = ThreadLocalRandom.current().nextInt(stocks.size());
+            for (int i = 0; i < stocks.size(); i++) {
+                int bucket = (start + i) % stocks.size();
+                if (stocks.get(bucket) >= quantity && bucketRepository.decrementStock(productId, bucket, quantity) == 1) {
+                    return (int) (total - quantity);
+                }
+            }
+        }
+        
+        List<ProductStockBucket> buckets = bucketRepository.findByProductIdForUpdate(productId);
+        if (buckets.isEmpty()) {
+            return null;
+        }
+        long total = buckets.stream().mapToLong(ProductStockBucket::getStock).sum();
+        if (total < quantity) {
+            throw new IllegalStateException("Insufficient stock for product: " + productId);
+        }
+        spread(buckets, total - quantity);
+        return (int) (total - quantity);
+    }
+    
+    // Puts the quantity back into a random bucket. Returns false when the bucket is gone, i.e. the
+    // product was merged or re-split into fewer buckets since the caller read its bucket count
+    public boolean give(Long productId, int buckets, int quantity) {
+        int bucket = ThreadLocalRandom.current().nextInt(buckets);
+        return bucketRepository.incrementStock(productId, bucket, quantity) == 1;
+    }
+    
+    // Returns the new totals, or null when the product has no buckets
+    public BucketTotals setStock(Long productId, int stock) {
+        List<ProductStockBucket> buckets = bucketRepository.findByProductIdForUpdate(productId);
+        if (buckets.isEmpty()) {
+            return null;
+        }
+        spread(buckets, stock);
+        long versions = buckets.stream().mapToLong(ProductStockBucket::getVersion).sum();
+        return new BucketTotals(productId, (long) stock, versions);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Long, BucketTotals> getTotals(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return byProductId(bucketRepository.findTotalsByProductIds(productIds));
+    }
+    
+    // Gives split products among the summaries their bucket stock and versions, as full product reads do
+    @Transactional(readOnly = true)
+    public List<ProductSummary> applyTotals(List<ProductSummary> summaries) {
+        List<Long> splitIds = new ArrayList<>();
+        for (ProductSummary summary : summaries) {
+            if (summary.getStockBuckets() > 0) {
+                splitIds.add(summary.getId());
+            }
+        }
+        if (splitIds.isEmpty()) {
+            return summaries;
+        }
+        Map<Long, BucketTotals> totals = getTotals(splitIds);
+        for (ProductSummary summary : summaries) {
+            BucketTotals summaryTotals = totals.get(summary.getId());
+            if (summaryTotals != null) {
+                summary.setStock(summaryTotals.getStock().intValue());
+                summary.setVersion(summary.getVersion() + summaryTotals.getVersion());
+            }
+        }
+        return summaries;
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Long, BucketTotals> getAllTotals() {
+        return byProductId(bucketRepository.findAllTotals());
+    }
+    
+    @Transactional(readOnly = true)
+    public long sumVersions() {
+        return bucketRepository.sumVersions();
+    }
+    
+    private static void spread(List<ProductStockBucket> buckets, long total) {
+        List<Integer> shares = shares(total, buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            ProductStockBucket bucket = buckets.get(i);
+            bucket.setStock(shares.get(i));
+            bucket.setVersion(bucket.getVersion() + 1);
+        }
+    }
+    
+    private static List<Integer> shares(long total, int buckets) {
+        List<Integer> shares = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            shares.add((int) (total / buckets + (i < total % buckets ? 1 : 0)));
+        }
+        return shares;
+    }
+    
+    private static Map<Long, BucketTotals> byProductId(List<BucketTotals> totals) {
+        Map<Long, BucketTotals> totalsById = new HashMap<>();
+        for (BucketTotals bucketTotals : totals) {
+            totalsById.put(bucketTotals.getProductId(), bucketTotals);
+        }
+        return totalsById;
+    }
+}
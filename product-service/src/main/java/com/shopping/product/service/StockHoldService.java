@@ -0,0 +1,146 @@
+package com.shopping.product.service;
+
+import com.shopping.product.dto.StockReservationItem;
+import com.shopping.product.entity.HoldStatus;
+import com.shopping.product.entity.StockHold;
+import com.shopping.product.entity.StockHoldItem;
+import com.shopping.product.repository.StockHoldRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+// Timed holds on stock for checkouts. The stock is taken when the hold is created, all or nothing,
+// so confirming a hold is a status change that cannot run out of stock; releasing it or letting it
+// expire puts the stock back. Operations that write stock run in their own transaction so they can
+// be repeated when they lose a race on a product
+@Service
+@Transactional
+public class StockHoldService {
+    
+    private final StockHoldRepository holdRepository;
+    private final ProductService productService;
+    private final StockWriteRetry stockWriteRetry;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    
+    public StockHoldService(StockHoldRepository holdRepository,
+                            ProductService productService,
+                            StockWriteRetry stockWriteRetry,
+                            @Value("${product.holds.default-ttl:10m}") Duration defaultTtl,
+                            @Value("${product.holds.max-ttl:30m}") Duration maxTtl) {
+        this.holdRepository = holdRepository;
+        this.productService = productService;
+        this.stockWriteRetry = stockWriteRetry;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+    }
+    
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StockHold createHold(List<StockReservationItem> items, Integer ttlSeconds) {
+        Duration ttl = ttlSeconds != null ? Duration.ofSeconds(ttlSeconds) : defaultTtl;
+        if (ttl.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("Hold TTL cannot exceed " + maxTtl.toSeconds() + " seconds");
+        }
+        
+        return stockWriteRetry.execute("hold", null, () -> {
+            productService.reserveStock(items);
+            
+            List<StockHoldItem> holdItems = new ArrayList<>();
+            quantities(items).forEach((productId, quantity) -> holdItems.add(new StockHoldItem(productId, quantity)));
+            LocalDateTime now = LocalDateTime.now();
+            return holdRepository.save(new StockHold(now, now.plus(ttl), holdItems));
+        });
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<StockHold> getHold(Long holdId) {
+        return holdRepository.findById(holdId);
+    }
+    
+    // When items are given they must match the hold line for line, so an order cannot confirm a
+    // hold taken for a different cart. Confirming a confirmed hold again succeeds, which makes
+    // retries after a lost response safe
+    public StockHold confirmHold(Long holdId, List<StockReservationItem> items) {
+        StockHold hold = holdRepository.findByIdForUpdate(holdId)
+                .orElseThrow(() -> new IllegalArgumentException("Stock hold not found: " + holdId));
+        
+        if (items != null && !quantities(items).equals(quantities(hold))) {
+            throw new IllegalArgumentException("Stock hold " + holdId + " does not match the requested items");
+        }
+        if (hold.getStatus() == HoldStatus.CONFIRMED) {
+            return hold;
+        }
+        if (hold.getStatus() != HoldStatus.ACTIVE || !hold.getExpiresAt().isAfter(LocalDateTime.now())) {
+            // A lapsed hold that is still ACTIVE keeps its stock until the sweeper returns it
+            throw new IllegalStateException("Stock hold " + holdId + " has expired or was released");
+        }
+        
+        hold.setStatus(HoldStatus.CONFIRMED);
+        return hold;
+    }
+    
+    // Releasing a hold that was already released or has expired is a no-op
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StockHold releaseHold(Long holdId) {
+        return stockWriteRetry.execute("release", null, () -> {
+            StockHold hold = holdRepository.findByIdForUpdate(holdId)
+                    .orElseThrow(() -> new IllegalArgumentException("Stock hold not found: " + holdId));
+            
+            if (hold.getStatus() == HoldStatus.CONFIRMED) {
+                throw new IllegalStateException("Stock hold " + holdId + " is already confirmed");
+            }
+            if (hold.getStatus() == HoldStatus.ACTIVE) {
+                hold.setStatus(HoldStatus.RELEASED);
+                productService.returnStock(quantities(hold));
+            }
+            return hold;
+        });
+    }
+    
+    // Expires up to limit due holds in one transaction and returns their stock with a single change
+    // per product. Returns the number of holds expired
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int expireDueHolds(int limit) {
+        return stockWriteRetry.execute("expire", null, () -> {
+            List<Long> dueIds = holdRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, limit));
+            if (dueIds.isEmpty()) {
+                return 0;
+            }
+            
+            List<StockHold> holds = holdRepository.findActiveByIdsForUpdate(dueIds);
+            Map<Long, Integer> quantities = new TreeMap<>();
+            for (StockHold hold : holds) {
+                hold.setStatus(HoldStatus.EXPIRED);
+                quantities(hold).forEach((productId, quantity) -> quantities.merge(productId, quantity, Integer::sum));
+            }
+            productService.returnStock(quantities);
+            return holds.size();
+        });
+    }
+    
+    private static Map<Long, Integer> quantities(List<StockReservationItem> items) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockReservationItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+    
+    private static Map<Long, Integer> quantities(StockHold hold) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockHoldItem item : hold.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,67 @@
+package com.shopping.product.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Returns the stock of lapsed holds in batches. Running it on several instances is safe: each batch
+// locks its holds and skips any that another instance has already expired
+@Component
+public class StockHoldSweeper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldSweeper.class);
+    
+    private final StockHoldService stockHoldService;
+    private final Duration sweepInterval;
+    private final int batchSize;
+    private ScheduledExecutorService sweeper;
+    
+    public StockHoldSweeper(StockHoldService stockHoldService,
+                            @Value("${product.holds.sweep-interval:5s}") Duration sweepInterval,
+                            @Value("${product.holds.sweep-batch-size:500}") int batchSize) {
+        this.stockHoldService = stockHoldService;
+        this.sweepInterval = sweepInterval;
+        this.batchSize = batchSize;
+    }
+    
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-hold-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        sweeper.shutdown();
+        sweeper.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    void sweep() {
+        try {
+            int total = 0;
+            int expired;
+            do {
+                expired = stockHoldService.expireDueHolds(batchSize);
+                total += expired;
+            } while (expired == batchSize);
+            if (total > 0) {
+                logger.info("Expired {} stock holds", total);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Stock hold sweep failed; retrying on the next interval", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.shopping.product.service;
+
+import com.shopping.product.entity.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Runs a stock write in a transaction of its own and repeats it when it loses a race: a stale
+// product version, a conditional write that matched no row, or a deadlock. Attempts are spaced by
+// an exponential backoff with full jitter so writers that collided do not collide again in step.
+// Inside a caller's transaction the work runs once and the caller's boundary decides on retries.
+//
+// Publishes product.stock.conflicts and product.stock.retries tagged with the operation and the
+// product that conflicted, so only contended products add series.
+@Component
+public class StockWriteRetry {
+    
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    
+    public StockWriteRetry(PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${product.stock.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${product.stock.retry.initial-backoff:5ms}") Duration initialBackoff,
+                           @Value("${product.stock.retry.max-backoff:100ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+    
+    // productId names the product in metrics when the failure itself does not, e.g. a deadlock
+    public <T> T execute(String operation, Long productId, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException e) {
+                String product = conflictingProduct(e, productId);
+                meterRegistry.counter("product.stock.conflicts", "operation", operation, "product", product).increment();
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                meterRegistry.counter("product.stock.retries", "operation", operation, "product", product).increment();
+                backOff(attempt, e);
+            }
+        }
+    }
+    
+    private void backOff(int attempt, ConcurrencyFailureException conflict) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+    
+    private static String conflictingProduct(ConcurrencyFailureException e, Long productId) {
+        if (e instanceof ObjectOptimisticLockingFailureException optimistic
+                && Product.class.getName().equals(optimistic.getPersistentClassName())
+                && optimistic.getIdentifier() != null) {
+            return optimistic.getIdentifier().toString();
+        }
+        return productId != null ? productId.toString() : "unknown";
+    }
+}
@@ -0,0 +1,279 @@
+package com.shopping.product.snapshot;
+
+import com.shopping.product.cache.ProductCache;
+import com.shopping.product.datasource.ReplicaRouting;
+import com.shopping.product.dto.BucketTotals;
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.dto.ProductSummary;
+import com.shopping.product.dto.ProductVersion;
+import com.shopping.product.entity.Product;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.repository.ProductRepository;
+import com.shopping.product.search.ProductFacetIndex;
+import com.shopping.product.search.ProductSearchIndex;
+import com.shopping.product.service.ProductService;
+import com.shopping.product.service.StockBucketService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Keeps a binary snapshot of the catalog on local disk so a restarted instance starts with warm
+// caches and indexes instead of refilling them from MySQL under traffic. The snapshot is rewritten
+// every interval when the catalog has changed, and once more on shutdown. On start it is loaded,
+// checked against the primary's versions (every product change bumps its version, so a differing
+// version is the only sign of a change) and the products that changed since are reloaded before
+// the cache, search index and facet index are seeded. Runs as a lifecycle bean in an early phase,
+// so the warm start completes before the web server accepts requests and the last snapshot is
+// written after it has stopped taking them.
+@Component
+public class CatalogSnapshot implements SmartLifecycle {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+    private static final int RELOAD_BATCH_SIZE = 500;
+    
+    private final ProductService productService;
+    private final ProductRepository productRepository;
+    private final StockBucketService stockBucketService;
+    private final ProductCache productCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacetIndex facetIndex;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration interval;
+    
+    // Products changed while the warm start runs; evicted once the cache has been seeded
+    private final Set<Long> changedDuringWarmStart = ConcurrentHashMap.newKeySet();
+    private volatile boolean warming;
+    // Only touched by the writer thread and, after it has stopped, by stop()
+    private CatalogVersion lastWritten;
+    
+    private ScheduledExecutorService writer;
+    private volatile boolean running;
+    
+    public CatalogSnapshot(ProductService productService,
+                           ProductRepository productRepository,
+                           StockBucketService stockBucketService,
+                           ProductCache productCache,
+                           ProductSearchIndex searchIndex,
+                           ProductFacetIndex facetIndex,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${product.snapshot.enabled:true}") boolean enabled,
+                           @Value("${product.snapshot.path:data/snapshot/catalog.snapshot}") Path path,
+                           @Value("${product.snapshot.interval:5m}") Duration interval) {
+        this.productService = productService;
+        this.productRepository = productRepository;
+        this.stockBucketService = stockBucketService;
+        this.productCache = productCache;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.path = path;
+        this.interval = interval;
+    }
+    
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        warmStart();
+        
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = interval.toMillis();
+        writer.scheduleWithFixedDelay(this::writeQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        writeQuietly();
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    // Before the web server starts and after it stops
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (warming) {
+            changedDuringWarmStart.add(event.getProductId());
+        }
+    }
+    
+    // Writes a new snapshot unless the catalog is unchanged since the last one; returns the number
+    // of products written, or -1 when skipped
+    int write() throws IOException {
+        // Read before the products, so the snapshot is at least as new as the version recorded for it
+        CatalogVersion version = productService.getCatalogVersion();
+        if (lastWritten != null && sameVersion(lastWritten, version)) {
+            return -1;
+        }
+        long start = System.currentTimeMillis();
+        int written = CatalogSnapshotFile.write(path, productService::streamAllProducts);
+        lastWritten = version;
+        logger.info("Catalog snapshot written: {} products to {} in {}ms",
+                written, path, System.currentTimeMillis() - start);
+        return written;
+    }
+    
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Writing the catalog snapshot to {} failed", path, e);
+        }
+    }
+    
+    private void warmStart() {
+        if (!Files.exists(path)) {
+            logger.info("No catalog snapshot at {}; caches and indexes fill from the database", path);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        warming = true;
+        try {
+            List<Product> products = CatalogSnapshotFile.read(path);
+            Map<Long, Product> productsById = new HashMap<>(products.size() * 2);
+            for (Product product : products) {
+                productsById.put(product.getId(), product);
+            }
+            
+            int refreshed;
+            try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+                List<Long> changedIds = catchUp(productsById);
+                if (changedIds == null) {
+                    logger.info("Catalog snapshot at {} does not match an empty database and is ignored", path);
+                    return;
+                }
+                reload(changedIds, productsById);
+                refreshed = changedIds.size();
+            }
+            
+            List<ProductSummary> summaries = new ArrayList<>(productsById.size());
+            for (Product product : productsById.values()) {
+                productCache.put(product);
+                summaries.add(new ProductSummary(product.getId(), product.getName(), product.getPrice(),
+                        product.getStock(), product.getVersion(), product.getStockBuckets()));
+            }
+            searchIndex.load(productsById.values());
+            facetIndex.load(summaries);
+            logger.info("Warm start from catalog snapshot: {} products, {} reloaded from the database, in {}ms",
+                    productsById.size(), refreshed, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not warm start from the catalog snapshot at {}; caches and indexes fill from the database",
+                    path, e);
+        } finally {
+            warming = false;
+            changedDuringWarmStart.forEach(productCache::evict);
+            changedDuringWarmStart.clear();
+        }
+    }
+    
+    // Drops snapshot products that no longer exist and returns the ids whose version differs from
+    // what readers are shown now, or null when the database has no products at all
+    private List<Long> catchUp(Map<Long, Product> productsById) {
+        return readOnlyTransaction.execute(status -> {
+            Map<Long, BucketTotals> bucketTotals = stockBucketService.getAllTotals();
+            List<Long> changedIds = new ArrayList<>();
+            Set<Long> seen = new HashSet<>(productsById.size() * 2);
+            try (Stream<ProductVersion> versions = productRepository.streamVersions()) {
+                versions.forEach(current -> {
+                    BucketTotals totals = bucketTotals.get(current.getId());
+                    long visibleVersion = current.getVersion() + (totals != null ? totals.getVersion() : 0);
+                    Product snapshotted = productsById.get(current.getId());
+                    if (snapshotted == null || !Objects.equals(snapshotted.getVersion(), visibleVersion)) {
+                        changedIds.add(current.getId());
+                    }
+                    seen.add(current.getId());
+                });
+            }
+            if (seen.isEmpty()) {
+                return null;
+            }
+            productsById.keySet().retainAll(seen);
+            return changedIds;
+        });
+    }
+    
+    private void reload(List<Long> ids, Map<Long, Product> productsById) {
+        for (int from = 0; from < ids.size(); from += RELOAD_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + RELOAD_BATCH_SIZE, ids.size()));
+            // Copies, so applying bucket totals never touches a managed entity
+            List<Product> products = readOnlyTransaction.execute(status -> {
+                List<Product> loaded = productRepository.findAllById(batch);
+                Map<Long, BucketTotals> totals = stockBucketService.getTotals(batch);
+                List<Product> copies = new ArrayList<>(loaded.size());
+                for (Product product : loaded) {
+                    Product copy = new Product(product.getName(), product.getDescription(),
+                            product.getPrice(), product.getStock());
+                    copy.setId(product.getId());
+                    copy.setVersion(product.getVersion());
+                    copy.setStockBuckets(product.getStockBuckets());
+                    BucketTotals productTotals = totals.get(product.getId());
+                    if (productTotals != null) {
+                        copy.setStock(productTotals.getStock().intValue());
+                        copy.setVersion(product.getVersion() + productTotals.getVersion());
+                    }
+                    copies.add(copy);
+                }
+                return copies;
+            });
+            for (Product product : products) {
+                productsById.put(product.getId(), product);
+            }
+        }
+    }
+    
+    private static boolean sameVersion(CatalogVersion a, CatalogVersion b) {
+        return Objects.equals(a.getProductCount(), b.getProductCount())
+                && Objects.equals(a.getVersionSum(), b.getVersionSum())
+                && Objects.equals(a.getMaxId(), b.getMaxId());
+    }
+}
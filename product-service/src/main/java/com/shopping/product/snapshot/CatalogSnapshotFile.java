@@ -0,0 +1,170 @@
+package com.shopping.product.snapshot;
+
+import com.shopping.product.entity.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Binary catalog snapshot: a fixed header (magic, format, product count, CRC32 of the records)
+// followed by one record per product. It is written to a temporary file, forced and renamed over
+// the previous snapshot, so readers only ever see a complete file; reads map it into memory and
+// decode the records straight from the page cache.
+final class CatalogSnapshotFile {
+    
+    private static final int MAGIC = 0x43534e50;
+    private static final int FORMAT_VERSION = 1;
+    // magic, format, count, CRC32
+    private static final int HEADER_BYTES = 20;
+    
+    private CatalogSnapshotFile() {
+    }
+    
+    // The source hands every product to the sink it is given; returns the number written
+    static int write(Path path, Consumer<Consumer<Product>> source) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(path.getFileName() + ".tmp");
+        
+        CRC32 crc = new CRC32();
+        int[] count = new int[1];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 64 * 1024));
+            try {
+                source.accept(product -> {
+                    try {
+                        writeRecord(out, product);
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(count[0])
+                    .putLong(crc.getValue())
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+    
+    // Products as they were written, detached; throws if the file is not a complete snapshot
+    static List<Product> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot has an unexpected size: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a catalog snapshot in a supported format: " + path);
+            }
+            int count = buffer.getInt();
+            long expectedCrc = buffer.getLong();
+            
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("Catalog snapshot is corrupt (checksum mismatch): " + path);
+            }
+            
+            List<Product> products = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    products.add(readRecord(buffer));
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Catalog snapshot is truncated: " + path, e);
+            }
+            return products;
+        }
+    }
+    
+    // id, version, stock, stock buckets, price (scale and unscaled bytes), name, description
+    private static void writeRecord(DataOutputStream out, Product product) throws IOException {
+        out.writeLong(product.getId());
+        out.writeLong(product.getVersion());
+        out.writeInt(product.getStock());
+        out.writeInt(product.getStockBuckets());
+        byte[] unscaled = product.getPrice().unscaledValue().toByteArray();
+        out.writeInt(product.getPrice().scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+        writeString(out, product.getName());
+        writeString(out, product.getDescription());
+    }
+    
+    private static Product readRecord(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        int stock = buffer.getInt();
+        int stockBuckets = buffer.getInt();
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.getShort()];
+        buffer.get(unscaled);
+        String name = readString(buffer);
+        String description = readString(buffer);
+        
+        Product product = new Product(name, description, new BigDecimal(new BigInteger(unscaled), scale), stock);
+        product.setId(id);
+        product.setVersion(version);
+        product.setStockBuckets(stockBuckets);
+        return product;
+    }
+    
+    // Length-prefixed UTF-8; a length of -1 stands for null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.shopping.product;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+// A private H2 database with the entity schema, and Hibernate over it as the service runs it:
+// repositories on a shared EntityManager under a JpaTransactionManager
+public class TestDatabase implements AutoCloseable {
+    
+    private final JdbcTemplate jdbc;
+    private final LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private final JpaTransactionManager transactionManager;
+    private final JpaRepositoryFactory repositoryFactory;
+    
+    public TestDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:product-test-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.shopping.product.entity");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create-drop",
+                "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy"));
+        entityManagerFactory.afterPropertiesSet();
+        EntityManagerFactory factory = entityManagerFactory.getObject();
+        
+        transactionManager = new JpaTransactionManager(factory);
+        repositoryFactory = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(factory));
+    }
+    
+    public <T> T repository(Class<T> repositoryInterface) {
+        return repositoryFactory.getRepository(repositoryInterface);
+    }
+    
+    public JpaTransactionManager transactionManager() {
+        return transactionManager;
+    }
+    
+    public TransactionTemplate transaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+    
+    public JdbcTemplate jdbc() {
+        return jdbc;
+    }
+    
+    @Override
+    public void close() {
+        entityManagerFactory.destroy();
+    }
+}
@@ -0,0 +1,31 @@
+package com.shopping.product.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogResponseCacheTest {
+    
+    @Test
+    void gzipIsServedWhenAccepted() {
+        assertThat(CatalogResponseCache.acceptsGzip("gzip")).isTrue();
+        assertThat(CatalogResponseCache.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(CatalogResponseCache.acceptsGzip("br;q=1.0, *;q=0.1")).isTrue();
+    }
+    
+    @Test
+    void gzipWithZeroQualityIsRefused() {
+        assertThat(CatalogResponseCache.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("deflate, gzip; q=0.000")).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("*;q=0")).isFalse();
+    }
+    
+    @Test
+    void gzipIsNotServedUnlessAsked() {
+        assertThat(CatalogResponseCache.acceptsGzip(null)).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("identity")).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("br, deflate")).isFalse();
+        assertThat(CatalogResponseCache.acceptsGzip("gzip;q=abc")).isFalse();
+    }
+}
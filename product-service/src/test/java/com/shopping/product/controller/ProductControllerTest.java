@@ -0,0 +1,129 @@
+package com.shopping.product.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.product.cache.CatalogResponseCache;
+import com.shopping.product.dto.CatalogVersion;
+import com.shopping.product.entity.Product;
+import com.shopping.product.service.ProductImportService;
+import com.shopping.product.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Conditional requests against the controller with Spring MVC's own ETag handling. Product 1 is
+// at version 3; the catalog is 2 products with versions summing to 7 and 9 as the highest id
+class ProductControllerTest {
+    
+    private static final String PRODUCT_ETAG = "\"1-3\"";
+    private static final String CATALOG_ETAG = "\"catalog-2-7-9\"";
+    
+    private ProductService productService;
+    private CatalogResponseCache catalogResponseCache;
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        catalogResponseCache = mock(CatalogResponseCache.class);
+        ProductController controller = new ProductController(productService, mock(ProductImportService.class),
+                new ObjectMapper(), catalogResponseCache);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        
+        Product product = new Product("Lamp", "Desk lamp", new BigDecimal("25.00"), 10);
+        product.setId(1L);
+        product.setVersion(3L);
+        when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(productService.getCatalogVersion()).thenReturn(new CatalogVersion(2L, 7L, 9L));
+    }
+    
+    @Test
+    void productReadCarriesItsETag() throws Exception {
+        mockMvc.perform(get("/api/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, PRODUCT_ETAG))
+                .andExpect(jsonPath("$.name").value("Lamp"));
+    }
+    
+    @Test
+    void productReadWithCurrentETagIsNotModified() throws Exception {
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, PRODUCT_ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, PRODUCT_ETAG))
+                .andExpect(content().string(""));
+    }
+    
+    @Test
+    void productReadMatchesWeakAndListedETags() throws Exception {
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, "W/" + PRODUCT_ETAG))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\", " + PRODUCT_ETAG))
+                .andExpect(status().isNotModified());
+    }
+    
+    @Test
+    void productReadWithStaleETagGetsTheBody() throws Exception {
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, PRODUCT_ETAG))
+                .andExpect(jsonPath("$.stock").value(10));
+    }
+    
+    @Test
+    void catalogWithCurrentETagIsNotModifiedWithoutReadingProducts() throws Exception {
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, CATALOG_ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG))
+                .andExpect(content().string(""));
+        
+        verify(catalogResponseCache, never()).getCatalog(any());
+        verify(productService, never()).streamAllProducts(any());
+    }
+    
+    @Test
+    void catalogWithStaleETagIsStreamed() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, "\"catalog-2-6-9\""))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG))
+                .andReturn();
+        
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        verify(productService).streamAllProducts(any());
+    }
+    
+    @Test
+    void stockUpdateWithStaleIfMatchFailsThePrecondition() throws Exception {
+        when(productService.updateStock(eq(1L), any(), anyLong()))
+                .thenThrow(new IllegalStateException("Product 1 has changed since version 2"));
+        
+        mockMvc.perform(put("/api/products/1/stock")
+                        .header(HttpHeaders.IF_MATCH, "\"1-2\"")
+                        .contentType("application/json")
+                        .content("{\"stock\": 5}"))
+                .andExpect(status().isPreconditionFailed());
+        verify(productService).updateStock(1L, 5, 2L);
+    }
+}
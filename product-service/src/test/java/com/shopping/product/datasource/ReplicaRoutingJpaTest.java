@@ -0,0 +1,161 @@
+package com.shopping.product.datasource;
+
+import com.shopping.product.config.ReplicaDataSourceConfig;
+import com.shopping.product.entity.Product;
+import com.shopping.product.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The services run Hibernate under JpaTransactionManager, which opens the session and begins its
+// transaction before the read-only flag is published. Each database holds product 1 under its own
+// name, so every read shows which one Hibernate's connection came from
+class ReplicaRoutingJpaTest {
+    
+    private static final Duration WINDOW = Duration.ofMillis(300);
+    private static final String CALLER_HEADER = "X-User-Id";
+    
+    private JdbcTemplate primaryJdbc;
+    private JdbcTemplate replicaJdbc;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private ProductRepository productRepository;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private ReadYourWritesFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        primaryJdbc = new JdbcTemplate(primary);
+        replicaJdbc = new JdbcTemplate(replica);
+        ReadYourWrites readYourWrites = new ReadYourWrites(WINDOW, 100);
+        DataSource routing = new ReplicaDataSourceConfig().dataSource(primary, replica, readYourWrites);
+        
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(routing);
+        entityManagerFactory.setPackagesToScan("com.shopping.product.entity");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "none",
+                "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy"));
+        entityManagerFactory.afterPropertiesSet();
+        EntityManagerFactory factory = entityManagerFactory.getObject();
+        
+        productRepository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(factory))
+                .getRepository(ProductRepository.class);
+        JpaTransactionManager transactionManager = new JpaTransactionManager(factory);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        filter = new ReadYourWritesFilter(readYourWrites, CALLER_HEADER);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        entityManagerFactory.destroy();
+    }
+    
+    @Test
+    void readOnlyRepositoryReadGoesToReplica() {
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void writeTransactionReadsAndFlushesOnPrimary() {
+        String readFrom = writeTransaction.execute(status -> {
+            Product product = productRepository.findById(1L).orElseThrow();
+            product.setStock(42);
+            return product.getName();
+        });
+        
+        assertThat(readFrom).isEqualTo("primary");
+        assertThat(stockIn(primaryJdbc)).isEqualTo(42);
+        assertThat(stockIn(replicaJdbc)).isEqualTo(10);
+    }
+    
+    @Test
+    void modifyingQueryGoesToPrimary() {
+        writeTransaction.executeWithoutResult(status -> productRepository.adjustStock(1L, -3, 1L));
+        
+        assertThat(stockIn(primaryJdbc)).isEqualTo(7);
+        assertThat(stockIn(replicaJdbc)).isEqualTo(10);
+    }
+    
+    @Test
+    void pinnedReadOnlyRepositoryReadGoesToPrimary() {
+        try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+            assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+        }
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void callerWhoWroteReadsFromPrimaryWithinWindow() throws Exception {
+        inRequest("alice", () -> writeTransaction.execute(status -> {
+            productRepository.findById(1L).orElseThrow().setStock(11);
+            return null;
+        }));
+        
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("primary");
+        assertThat(inRequest("bob", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+        
+        Thread.sleep(WINDOW.toMillis() * 2);
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+    }
+    
+    private String readFromReplicaIfAllowed() {
+        return readOnlyTransaction.execute(status -> productRepository.findById(1L).orElseThrow().getName());
+    }
+    
+    private static Integer stockIn(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT stock FROM products WHERE id = 1", Integer.class);
+    }
+    
+    // Runs the work as the handling of a request from the caller, through the filter
+    private String inRequest(String caller, Supplier<String> work) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(CALLER_HEADER, caller);
+        AtomicReference<String> result = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                result.set(work.get());
+            }
+        });
+        return result.get();
+    }
+    
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:jpa-routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                + "description VARCHAR(1000), price DECIMAL(10, 2) NOT NULL, stock INT NOT NULL, "
+                + "version BIGINT NOT NULL, stock_buckets INT NOT NULL)");
+        jdbc.update("INSERT INTO products VALUES (1, ?, NULL, 1.00, 10, 0, 0)", name);
+        return dataSource;
+    }
+}
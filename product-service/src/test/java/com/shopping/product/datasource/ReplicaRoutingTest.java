@@ -0,0 +1,145 @@
+package com.shopping.product.datasource;
+
+import com.shopping.product.config.ReplicaDataSourceConfig;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Routes through the DataSource ReplicaDataSourceConfig builds, over two H2 databases that each
+// name themselves, with a real transaction manager: the read-only flag is only known after the
+// transaction has begun, so routing depends on the lazy proxy deferring the connection
+class ReplicaRoutingTest {
+    
+    private static final Duration WINDOW = Duration.ofMillis(300);
+    private static final String CALLER_HEADER = "X-User-Id";
+    
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private ReadYourWritesFilter filter;
+    
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        ReadYourWrites readYourWrites = new ReadYourWrites(WINDOW, 100);
+        DataSource routing = new ReplicaDataSourceConfig().dataSource(primary, replica, readYourWrites);
+        
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        jdbcTemplate = new JdbcTemplate(routing);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        filter = new ReadYourWritesFilter(readYourWrites, CALLER_HEADER);
+    }
+    
+    @Test
+    void readOnlyTransactionReadsFromReplica() {
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void writeTransactionGoesToPrimary() {
+        assertThat(readInWriteTransaction()).isEqualTo("primary");
+    }
+    
+    @Test
+    void pinnedReadOnlyTransactionReadsFromPrimary() {
+        try (ReplicaRouting.PrimaryPin pin = ReplicaRouting.pinPrimary()) {
+            assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+        }
+        assertThat(readFromReplicaIfAllowed()).isEqualTo("replica");
+    }
+    
+    @Test
+    void nestedPinOutlivesInnerPin() {
+        try (ReplicaRouting.PrimaryPin outer = ReplicaRouting.pinPrimary()) {
+            try (ReplicaRouting.PrimaryPin inner = ReplicaRouting.pinPrimary()) {
+                assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+            }
+            assertThat(readFromReplicaIfAllowed()).isEqualTo("primary");
+        }
+    }
+    
+    @Test
+    void callerWhoWroteReadsFromPrimaryWithinWindow() throws Exception {
+        assertThat(inRequest("alice", () -> write(false))).isEqualTo("primary");
+        
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("primary");
+        assertThat(inRequest("bob", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+        assertThat(inRequest(null, this::readFromReplicaIfAllowed)).isEqualTo("replica");
+        
+        Thread.sleep(WINDOW.toMillis() * 2);
+        assertThat(inRequest("alice", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+    }
+    
+    @Test
+    void rolledBackWriteDoesNotPinCaller() throws Exception {
+        inRequest("carol", () -> write(true));
+        
+        assertThat(inRequest("carol", this::readFromReplicaIfAllowed)).isEqualTo("replica");
+    }
+    
+    private String readFromReplicaIfAllowed() {
+        return readOnlyTransaction.execute(status -> whoAmI());
+    }
+    
+    private String readInWriteTransaction() {
+        return writeTransaction.execute(status -> whoAmI());
+    }
+    
+    // Returns the database written to
+    private String write(boolean rollback) {
+        return writeTransaction.execute(status -> {
+            jdbcTemplate.update("UPDATE who_am_i SET touched = touched + 1");
+            if (rollback) {
+                status.setRollbackOnly();
+            }
+            return whoAmI();
+        });
+    }
+    
+    private String whoAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM who_am_i", String.class);
+    }
+    
+    // Runs the work as the handling of a request from the caller (none when null), through the filter
+    private String inRequest(String caller, Supplier<String> work) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (caller != null) {
+            request.addHeader(CALLER_HEADER, caller);
+        }
+        AtomicReference<String> result = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                result.set(work.get());
+            }
+        });
+        return result.get();
+    }
+    
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE who_am_i (name VARCHAR(20), touched INT)");
+        jdbc.update("INSERT INTO who_am_i VALUES (?, 0)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,188 @@
+package com.shopping.product.inventory;
+
+import com.shopping.product.TestDatabase;
+import com.shopping.product.entity.InventoryCheckpoint;
+import com.shopping.product.event.ProductChangedEvent;
+import com.shopping.product.event.ProductChangedEvent.ChangeType;
+import com.shopping.product.repository.InventoryCheckpointRepository;
+import com.shopping.product.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+// The engine against the real schema with a journal in a temporary directory. Flushes only run
+// when a test calls flush(), so a crash is a copy of the journal taken while changes are pending:
+// a second engine started on the copy finds exactly what the first one had made durable
+class HotStockEngineTest {
+    
+    private static final Long PRODUCT_ID = 1L;
+    
+    @TempDir
+    Path directory;
+    
+    private TestDatabase database;
+    private ApplicationEventPublisher eventPublisher;
+    private final List<HotStockEngine> engines = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        database = new TestDatabase();
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        database.jdbc().update("INSERT INTO products (id, name, price, stock, version, stock_buckets) "
+                + "VALUES (?, 'Lamp', 25.00, 100, 0, 0)", PRODUCT_ID);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (HotStockEngine engine : engines) {
+            engine.stop();
+        }
+        database.close();
+    }
+    
+    @Test
+    void changesMoveTheVersionAheadOfTheRowUntilFlushed() throws IOException {
+        HotStockEngine engine = start(directory.resolve("journal"));
+        
+        assertThat(engine.reserve(PRODUCT_ID, 3)).isEqualTo(97);
+        engine.release(PRODUCT_ID, 1);
+        
+        assertThat(engine.getStock(PRODUCT_ID)).isEqualTo(98);
+        assertThat(engine.getVersion(PRODUCT_ID)).isEqualTo(2);
+        assertThat(engine.unflushedVersions()).isEqualTo(2);
+        assertThat(rowStock()).isEqualTo(100);
+        
+        engine.flush();
+        
+        assertThat(rowStock()).isEqualTo(98);
+        assertThat(rowVersion()).isEqualTo(2);
+        assertThat(engine.unflushedVersions()).isZero();
+        assertThat(checkpoint()).isEqualTo(2);
+    }
+    
+    @Test
+    void journaledChangesAreReplayedAfterACrash() throws IOException {
+        HotStockEngine engine = start(directory.resolve("journal"));
+        engine.reserve(PRODUCT_ID, 3);
+        engine.reserve(PRODUCT_ID, 2);
+        engine.release(PRODUCT_ID, 1);
+        Path crashed = copyJournal(directory.resolve("journal"), directory.resolve("crashed"));
+        
+        HotStockEngine restarted = start(crashed);
+        
+        assertThat(rowStock()).isEqualTo(96);
+        assertThat(rowVersion()).isEqualTo(3);
+        assertThat(checkpoint()).isEqualTo(3);
+        assertThat(restarted.getStock(PRODUCT_ID)).isEqualTo(96);
+        assertThat(restarted.getVersion(PRODUCT_ID)).isEqualTo(engine.getVersion(PRODUCT_ID));
+        assertThat(restarted.unflushedVersions()).isZero();
+        assertThat(InventoryJournal.readAfter(crashed, 0)).isEmpty();
+        assertThat(publishedChanges()).contains(PRODUCT_ID);
+    }
+    
+    @Test
+    void replaySkipsWhatTheCheckpointAlreadyCovers() throws IOException {
+        HotStockEngine engine = start(directory.resolve("journal"));
+        engine.reserve(PRODUCT_ID, 5);
+        engine.flush();
+        engine.reserve(PRODUCT_ID, 2);
+        Path crashed = copyJournal(directory.resolve("journal"), directory.resolve("crashed"));
+        
+        HotStockEngine restarted = start(crashed);
+        
+        assertThat(rowStock()).isEqualTo(93);
+        assertThat(rowVersion()).isEqualTo(2);
+        assertThat(checkpoint()).isEqualTo(2);
+        assertThat(restarted.getStock(PRODUCT_ID)).isEqualTo(93);
+    }
+    
+    @Test
+    void changesThatCancelOutStillMoveTheVersionOnReplay() throws IOException {
+        HotStockEngine engine = start(directory.resolve("journal"));
+        engine.reserve(PRODUCT_ID, 4);
+        engine.release(PRODUCT_ID, 4);
+        Path crashed = copyJournal(directory.resolve("journal"), directory.resolve("crashed"));
+        
+        start(crashed);
+        
+        assertThat(rowStock()).isEqualTo(100);
+        assertThat(rowVersion()).isEqualTo(2);
+    }
+    
+    @Test
+    void journalIsReplayedWhenNoProductIsHotAnyMore() throws IOException {
+        HotStockEngine engine = start(directory.resolve("journal"));
+        engine.reserve(PRODUCT_ID, 10);
+        Path crashed = copyJournal(directory.resolve("journal"), directory.resolve("crashed"));
+        
+        HotStockEngine restarted = start(crashed, List.of());
+        
+        assertThat(rowStock()).isEqualTo(90);
+        assertThat(restarted.isHot(PRODUCT_ID)).isFalse();
+    }
+    
+    private HotStockEngine start(Path journalDirectory) throws IOException {
+        return start(journalDirectory, List.of(PRODUCT_ID));
+    }
+    
+    private HotStockEngine start(Path journalDirectory, List<Long> hotProductIds) throws IOException {
+        HotStockEngine engine = new HotStockEngine(database.repository(ProductRepository.class),
+                database.repository(InventoryCheckpointRepository.class), database.transactionManager(),
+                eventPublisher, hotProductIds, 4, Duration.ofHours(1), journalDirectory, DataSize.ofKilobytes(64));
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+    
+    // Every append is on disk before it returns, so the copy holds all of it
+    private static Path copyJournal(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> segments = Files.list(from)) {
+            for (Path segment : segments.toList()) {
+                Files.copy(segment, to.resolve(segment.getFileName()));
+            }
+        }
+        return to;
+    }
+    
+    private List<Long> publishedChanges() {
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        return events.getAllValues().stream()
+                .filter(ProductChangedEvent.class::isInstance)
+                .map(ProductChangedEvent.class::cast)
+                .filter(event -> event.getChangeType() == ChangeType.STOCK_CHANGED)
+                .map(ProductChangedEvent::getProductId)
+                .toList();
+    }
+    
+    private Integer rowStock() {
+        return database.jdbc().queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID);
+    }
+    
+    private Long rowVersion() {
+        return database.jdbc().queryForObject("SELECT version FROM products WHERE id = ?", Long.class, PRODUCT_ID);
+    }
+    
+    private Long checkpoint() {
+        return database.jdbc().queryForObject("SELECT last_seq FROM inventory_checkpoint WHERE id = ?",
+                Long.class, InventoryCheckpoint.SINGLETON_ID);
+    }
+}
@@ -0,0 +1,22 @@
+package com.shopping.product.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+    
+    @Test
+    void tokensDoNotDependOnTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            // Lower-cases 'I' to a dotless 'ı' unless the locale is fixed
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertThat(ProductSearchIndex.tokenize("WIRELESS Mouse")).containsExactly("wireless", "mouse");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
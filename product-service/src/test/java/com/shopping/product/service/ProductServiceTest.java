@@ -0,0 +1,94 @@
+package com.shopping.product.service;
+
+import com.shopping.product.TestDatabase;
+import com.shopping.product.cache.ProductCache;
+import com.shopping.product.dto.StockReservationItem;
+import com.shopping.product.inventory.HotStockEngine;
+import com.shopping.product.repository.ProductRepository;
+import com.shopping.product.repository.ProductStockBucketRepository;
+import com.shopping.product.search.ProductFacetIndex;
+import com.shopping.product.search.ProductSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+// Multi-line reservations against the real schema. Products 1, 2 and 3 start with 5, 3 and 1 units
+class ProductServiceTest {
+    
+    private TestDatabase database;
+    private ProductService productService;
+    
+    @BeforeEach
+    void setUp() {
+        database = new TestDatabase();
+        StockWriteRetry retry = new StockWriteRetry(database.transactionManager(), new SimpleMeterRegistry(),
+                3, Duration.ofMillis(1), Duration.ofMillis(5));
+        productService = new ProductService(database.repository(ProductRepository.class), mock(ProductCache.class),
+                mock(ApplicationEventPublisher.class), mock(EntityManager.class), mock(ProductSearchIndex.class),
+                mock(HotStockEngine.class),
+                new StockBucketService(database.repository(ProductStockBucketRepository.class)),
+                retry, mock(ProductFacetIndex.class));
+        database.jdbc().update("INSERT INTO products (id, name, price, stock, version, stock_buckets) VALUES "
+                + "(1, 'Lamp', 25.00, 5, 0, 0), (2, 'Desk', 150.00, 3, 0, 0), (3, 'Chair', 80.00, 1, 0, 0)");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+    
+    @Test
+    void reservationTakesEveryLine() {
+        assertThat(productService.reserveStock(List.of(item(2L, 1), item(1L, 2))))
+                .extracting("productId", "stock")
+                .containsExactly(tuple(1L, 3), tuple(2L, 2));
+        
+        assertThat(stocks()).containsExactly(3, 2, 1);
+    }
+    
+    @Test
+    void shortLineRollsBackTheLinesBeforeIt() {
+        assertThatThrownBy(() -> productService.reserveStock(List.of(item(1L, 2), item(2L, 1), item(3L, 2))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("product: 3");
+        
+        assertThat(stocks()).containsExactly(5, 3, 1);
+    }
+    
+    @Test
+    void repeatedLinesAreCheckedAgainstTheirTotal() {
+        assertThatThrownBy(() -> productService.reserveStock(List.of(item(2L, 2), item(1L, 1), item(2L, 2))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(stocks()).containsExactly(5, 3, 1);
+        
+        productService.reserveStock(List.of(item(2L, 1), item(2L, 2)));
+        assertThat(stocks()).containsExactly(5, 0, 1);
+    }
+    
+    @Test
+    void unknownProductFailsTheWholeReservation() {
+        assertThatThrownBy(() -> productService.reserveStock(List.of(item(1L, 1), item(99L, 1))))
+                .isInstanceOf(IllegalArgumentException.class);
+        
+        assertThat(stocks()).containsExactly(5, 3, 1);
+    }
+    
+    private List<Integer> stocks() {
+        return database.jdbc().queryForList("SELECT stock FROM products ORDER BY id", Integer.class);
+    }
+    
+    private static StockReservationItem item(Long productId, int quantity) {
+        return new StockReservationItem(productId, quantity);
+    }
+}
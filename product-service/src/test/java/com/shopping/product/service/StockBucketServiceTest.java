@@ -0,0 +1,178 @@
+package com.shopping.product.service;
+
+import com.shopping.product.TestDatabase;
+import com.shopping.product.cache.ProductCache;
+import com.shopping.product.dto.StockBucketsResponse;
+import com.shopping.product.inventory.HotStockEngine;
+import com.shopping.product.repository.ProductRepository;
+import com.shopping.product.repository.ProductStockBucketRepository;
+import com.shopping.product.search.ProductFacetIndex;
+import com.shopping.product.search.ProductSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+// Splitting, merging and taking stock through ProductService against the real schema. Product 1
+// starts with 10 units, which four buckets hold as 3, 3, 2 and 2
+class StockBucketServiceTest {
+    
+    private static final Long PRODUCT_ID = 1L;
+    
+    private TestDatabase database;
+    private StockBucketService bucketService;
+    private ProductService productService;
+    
+    @BeforeEach
+    void setUp() {
+        database = new TestDatabase();
+        bucketService = new StockBucketService(database.repository(ProductStockBucketRepository.class));
+        StockWriteRetry retry = new StockWriteRetry(database.transactionManager(), new SimpleMeterRegistry(),
+                3, Duration.ofMillis(1), Duration.ofMillis(5));
+        productService = new ProductService(database.repository(ProductRepository.class), mock(ProductCache.class),
+                mock(ApplicationEventPublisher.class), mock(EntityManager.class), mock(ProductSearchIndex.class),
+                mock(HotStockEngine.class), bucketService, retry, mock(ProductFacetIndex.class));
+        database.jdbc().update("INSERT INTO products (id, name, price, stock, version, stock_buckets) "
+                + "VALUES (?, 'Lamp', 25.00, 10, 0, 0)", PRODUCT_ID);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+    
+    @Test
+    void splitMovesTheStockIntoBucketsAndMergeFoldsItBack() {
+        StockBucketsResponse split = productService.configureStockBuckets(PRODUCT_ID, 4);
+        
+        assertThat(split.getStock()).isEqualTo(10);
+        assertThat(split.getBuckets()).containsExactly(3, 3, 2, 2);
+        assertThat(rowStock()).isZero();
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).containsExactly(3, 3, 2, 2);
+        long splitVersion = visibleVersion();
+        
+        assertThat(productService.reduceStock(PRODUCT_ID, 2)).isEqualTo(8);
+        long takenVersion = visibleVersion();
+        assertThat(takenVersion).isGreaterThan(splitVersion);
+        
+        StockBucketsResponse merged = productService.configureStockBuckets(PRODUCT_ID, 1);
+        
+        assertThat(merged.getStock()).isEqualTo(8);
+        assertThat(merged.getBuckets()).isEmpty();
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).isEmpty();
+        assertThat(rowStock()).isEqualTo(8);
+        // The drained bucket versions move into the row, so readers never see the version go back
+        assertThat(visibleVersion()).isGreaterThan(takenVersion);
+    }
+    
+    @Test
+    void resplitSpreadsTheBucketStockOverTheNewCount() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        productService.reduceStock(PRODUCT_ID, 1);
+        
+        StockBucketsResponse resplit = productService.configureStockBuckets(PRODUCT_ID, 2);
+        
+        assertThat(resplit.getBuckets()).containsExactly(5, 4);
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).containsExactly(5, 4);
+        assertThat(rowStock()).isZero();
+    }
+    
+    @Test
+    void takeComesOutOfASingleBucketWhenOneHoldsEnough() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        
+        assertThat(productService.reduceStock(PRODUCT_ID, 2)).isEqualTo(8);
+        
+        List<Integer> buckets = bucketService.getBuckets(PRODUCT_ID);
+        assertThat(buckets.stream().mapToInt(Integer::intValue).sum()).isEqualTo(8);
+        assertThat(changedBuckets(List.of(3, 3, 2, 2), buckets)).isEqualTo(1);
+        assertThat(bucketVersions()).containsOnly(0L, 1L).containsOnlyOnce(1L);
+    }
+    
+    @Test
+    void takeLocksAndRebalancesWhenNoSingleBucketHoldsEnough() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        
+        assertThat(productService.reduceStock(PRODUCT_ID, 5)).isEqualTo(5);
+        
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).containsExactly(2, 1, 1, 1);
+        assertThat(bucketVersions()).containsOnly(1L);
+        assertThat(rowStock()).isZero();
+    }
+    
+    @Test
+    void takeOfMoreThanTheTotalLeavesEveryBucketAlone() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        
+        assertThatThrownBy(() -> productService.reduceStock(PRODUCT_ID, 11))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Insufficient stock");
+        
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).containsExactly(3, 3, 2, 2);
+        assertThat(bucketVersions()).containsOnly(0L);
+    }
+    
+    @Test
+    void takeCanEmptyEveryBucket() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        
+        assertThat(productService.reduceStock(PRODUCT_ID, 10)).isZero();
+        
+        assertThat(bucketService.getBuckets(PRODUCT_ID)).containsExactly(0, 0, 0, 0);
+    }
+    
+    @Test
+    void returnedStockGoesBackIntoABucket() {
+        productService.configureStockBuckets(PRODUCT_ID, 4);
+        productService.reduceStock(PRODUCT_ID, 5);
+        
+        productService.returnStock(Map.of(PRODUCT_ID, 5));
+        
+        assertThat(bucketService.getBuckets(PRODUCT_ID).stream().mapToInt(Integer::intValue).sum()).isEqualTo(10);
+        assertThat(rowStock()).isZero();
+    }
+    
+    @Test
+    void takeWithoutBucketsLeavesTheProductToItsRow() {
+        Integer remaining = database.transaction().execute(status -> bucketService.take(PRODUCT_ID, 1));
+        
+        assertThat(remaining).isNull();
+        assertThat(productService.reduceStock(PRODUCT_ID, 1)).isEqualTo(9);
+        assertThat(rowStock()).isEqualTo(9);
+    }
+    
+    private Integer rowStock() {
+        return database.jdbc().queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, PRODUCT_ID);
+    }
+    
+    private List<Long> bucketVersions() {
+        return database.jdbc().queryForList(
+                "SELECT version FROM product_stock_bucket WHERE product_id = ? ORDER BY bucket", Long.class, PRODUCT_ID);
+    }
+    
+    // The row version plus every bucket version, which is what product reads report
+    private long visibleVersion() {
+        return database.jdbc().queryForObject("SELECT version FROM products WHERE id = ?", Long.class, PRODUCT_ID)
+                + bucketVersions().stream().mapToLong(Long::longValue).sum();
+    }
+    
+    private static long changedBuckets(List<Integer> before, List<Integer> after) {
+        long changed = 0;
+        for (int i = 0; i < before.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,173 @@
+package com.shopping.product.service;
+
+import com.shopping.product.TestDatabase;
+import com.shopping.product.dto.StockReservationItem;
+import com.shopping.product.entity.HoldStatus;
+import com.shopping.product.entity.StockHold;
+import com.shopping.product.repository.StockHoldRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Holds against a real schema, with the stock writes themselves left to a mocked ProductService:
+// what matters here is when a hold takes stock and when, and how much, it gives back. A TTL of
+// zero creates a hold that is already due
+class StockHoldServiceTest {
+    
+    private TestDatabase database;
+    private StockHoldRepository holdRepository;
+    private ProductService productService;
+    private StockHoldService holdService;
+    
+    @BeforeEach
+    void setUp() {
+        database = new TestDatabase();
+        holdRepository = database.repository(StockHoldRepository.class);
+        productService = mock(ProductService.class);
+        StockWriteRetry retry = new StockWriteRetry(database.transactionManager(), new SimpleMeterRegistry(),
+                3, Duration.ofMillis(1), Duration.ofMillis(5));
+        holdService = new StockHoldService(holdRepository, productService, retry,
+                Duration.ofMinutes(10), Duration.ofMinutes(30));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+    
+    @Test
+    void createHoldReservesEveryLineAndMergesThemPerProduct() {
+        List<StockReservationItem> items = List.of(item(1L, 2), item(2L, 1), item(1L, 3));
+        
+        StockHold hold = holdService.createHold(items, 60);
+        
+        verify(productService).reserveStock(items);
+        StockHold stored = holdRepository.findById(hold.getId()).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo(HoldStatus.ACTIVE);
+        assertThat(stored.getItems()).extracting("productId", "quantity")
+                .containsExactlyInAnyOrder(tuple(1L, 5), tuple(2L, 1));
+        assertThat(Duration.between(stored.getCreatedAt(), stored.getExpiresAt())).isEqualTo(Duration.ofSeconds(60));
+    }
+    
+    @Test
+    void noHoldIsStoredWhenTheStockIsShort() {
+        when(productService.reserveStock(any())).thenThrow(new IllegalStateException("Insufficient stock for product: 1"));
+        
+        assertThatThrownBy(() -> holdService.createHold(List.of(item(1L, 2)), 60))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(holdRepository.count()).isZero();
+    }
+    
+    @Test
+    void ttlAboveTheMaximumIsRefused() {
+        assertThatThrownBy(() -> holdService.createHold(List.of(item(1L, 1)), 3600))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(productService, never()).reserveStock(any());
+    }
+    
+    @Test
+    void expiringReturnsTheStockOfDueHoldsOnceWithOneChangePerProduct() {
+        StockHold first = holdService.createHold(List.of(item(1L, 2), item(2L, 1)), 0);
+        StockHold second = holdService.createHold(List.of(item(1L, 3)), 0);
+        StockHold live = holdService.createHold(List.of(item(1L, 4)), 600);
+        
+        assertThat(holdService.expireDueHolds(10)).isEqualTo(2);
+        
+        verify(productService).returnStock(Map.of(1L, 5, 2L, 1));
+        assertThat(status(first)).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(status(second)).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(status(live)).isEqualTo(HoldStatus.ACTIVE);
+        
+        assertThat(holdService.expireDueHolds(10)).isZero();
+        verify(productService, times(1)).returnStock(any());
+    }
+    
+    @Test
+    void expiringStopsAtTheBatchLimit() {
+        holdService.createHold(List.of(item(1L, 1)), 0);
+        holdService.createHold(List.of(item(1L, 1)), 0);
+        holdService.createHold(List.of(item(1L, 1)), 0);
+        
+        assertThat(holdService.expireDueHolds(2)).isEqualTo(2);
+        assertThat(holdService.expireDueHolds(2)).isEqualTo(1);
+        
+        verify(productService).returnStock(Map.of(1L, 2));
+        verify(productService).returnStock(Map.of(1L, 1));
+    }
+    
+    @Test
+    void confirmedHoldKeepsItsStockAfterItsExpiry() {
+        List<StockReservationItem> items = List.of(item(1L, 2));
+        StockHold hold = holdService.createHold(items, 60);
+        
+        assertThat(confirm(hold.getId(), items).getStatus()).isEqualTo(HoldStatus.CONFIRMED);
+        // Confirming again after a lost response succeeds
+        assertThat(confirm(hold.getId(), items).getStatus()).isEqualTo(HoldStatus.CONFIRMED);
+        
+        database.jdbc().update("UPDATE stock_holds SET expires_at = DATEADD('MINUTE', -1, CURRENT_TIMESTAMP)");
+        assertThat(holdService.expireDueHolds(10)).isZero();
+        assertThatThrownBy(() -> holdService.releaseHold(hold.getId())).isInstanceOf(IllegalStateException.class);
+        verify(productService, never()).returnStock(any());
+    }
+    
+    @Test
+    void lapsedHoldCannotBeConfirmedAndTheSweepReturnsItsStock() {
+        List<StockReservationItem> items = List.of(item(1L, 2));
+        StockHold hold = holdService.createHold(items, 0);
+        
+        assertThatThrownBy(() -> confirm(hold.getId(), items)).isInstanceOf(IllegalStateException.class);
+        assertThat(status(hold)).isEqualTo(HoldStatus.ACTIVE);
+        
+        assertThat(holdService.expireDueHolds(10)).isEqualTo(1);
+        verify(productService).returnStock(Map.of(1L, 2));
+    }
+    
+    @Test
+    void holdIsOnlyConfirmedForTheItemsItWasTakenFor() {
+        StockHold hold = holdService.createHold(List.of(item(1L, 2)), 60);
+        
+        assertThatThrownBy(() -> confirm(hold.getId(), List.of(item(1L, 3))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(status(hold)).isEqualTo(HoldStatus.ACTIVE);
+    }
+    
+    @Test
+    void releasedHoldReturnsItsStockOnce() {
+        StockHold hold = holdService.createHold(List.of(item(1L, 2)), 0);
+        
+        assertThat(holdService.releaseHold(hold.getId()).getStatus()).isEqualTo(HoldStatus.RELEASED);
+        assertThat(holdService.releaseHold(hold.getId()).getStatus()).isEqualTo(HoldStatus.RELEASED);
+        assertThat(holdService.expireDueHolds(10)).isZero();
+        
+        verify(productService, times(1)).returnStock(any());
+        verify(productService).returnStock(Map.of(1L, 2));
+    }
+    
+    // confirmHold runs in the transaction its proxy would open, which the row lock needs
+    private StockHold confirm(Long holdId, List<StockReservationItem> items) {
+        return database.transaction().execute(status -> holdService.confirmHold(holdId, items));
+    }
+    
+    private HoldStatus status(StockHold hold) {
+        return holdRepository.findById(hold.getId()).orElseThrow().getStatus();
+    }
+    
+    private static StockReservationItem item(Long productId, int quantity) {
+        return new StockReservationItem(productId, quantity);
+    }
+}